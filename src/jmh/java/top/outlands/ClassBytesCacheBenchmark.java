@@ -0,0 +1,101 @@
+package top.outlands;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import top.outlands.foundation.boot.ClassBytesArena;
+import top.outlands.foundation.boot.ClassBytesCache;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The bounded class bytes cache and its off-heap arena, on the paths the loader takes: hits of prefetched bytes,
+ * misses, the put, get and release of a demand load, and puts past the bound that make the cache evict. {@code offHeap}
+ * keeps the bytes in a {@link ClassBytesArena} of the same size as the heap bound, which bounds them on its own.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ClassBytesCacheBenchmark {
+    private static final int NAMES = 1 << 14;
+    private static final int HOT = 1 << 12;
+
+    @Param({"false", "true"})
+    public boolean offHeap;
+
+    @Param({"4096"})
+    public int classSize;
+
+    private ClassBytesCache cache;
+    private String[] names;
+    private byte[] bytes;
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        // Room for the hot names with some slack, a quarter of every name
+        final long maxWeight = (long) classSize * HOT * 5 / 4;
+        cache = new ClassBytesCache(maxWeight, false, offHeap ? new ClassBytesArena(maxWeight) : null);
+        names = new String[NAMES];
+        for (int i = 0; i < NAMES; i++) {
+            names[i] = "net.minecraft.pkg" + i % 64 + ".Class" + i;
+        }
+        bytes = new byte[classSize];
+        for (int i = 0; i < HOT; i++) {
+            cache.put(names[i], bytes);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int next;
+
+        int next(int bound) {
+            int index = next < bound ? next : 0;
+            next = index + 1;
+            return index;
+        }
+    }
+
+    @Benchmark
+    public byte[] hit(Cursor cursor) {
+        return cache.get(names[cursor.next(HOT)]);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public byte[] hitContended(Cursor cursor) {
+        return cache.get(names[cursor.next(HOT)]);
+    }
+
+    @Benchmark
+    public byte[] miss(Cursor cursor) {
+        return cache.get(names[HOT + cursor.next(NAMES - HOT)]);
+    }
+
+    @Benchmark
+    public byte[] demandLoad(Cursor cursor) {
+        final String name = names[HOT + cursor.next(NAMES - HOT)];
+        cache.put(name, bytes);
+        final byte[] read = cache.get(name);
+        cache.release(name);
+        return read;
+    }
+
+    @Benchmark
+    public void putPastBound(Cursor cursor) {
+        cache.put(names[cursor.next(NAMES)], bytes);
+    }
+}
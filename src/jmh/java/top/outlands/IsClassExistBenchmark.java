@@ -0,0 +1,133 @@
+package top.outlands;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import top.outlands.foundation.boot.ClassPathIndex;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Answering {@code isClassExist} from the class path index, against the path it replaces: {@code testGetClassBytes},
+ * which found the resource through the class path, then read and inflated the whole class file. Half the names looked up
+ * exist, spread over several jars; the other half exist in none of them, like the candidates mods probe for.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IsClassExistBenchmark {
+    @Param({"8"})
+    public int jars;
+
+    @Param({"500"})
+    public int entriesPerJar;
+
+    @Param({"4096"})
+    public int entrySize;
+
+    private File[] files;
+    private ClassPathIndex index;
+    private URLClassLoader classPath;
+    private String[] existing;
+    private String[] missing;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        files = new File[jars];
+        URL[] urls = new URL[jars];
+        existing = new String[jars * entriesPerJar];
+        missing = new String[existing.length];
+        Random random = new Random(42);
+        byte[] content = new byte[entrySize];
+        for (int jar = 0; jar < jars; jar++) {
+            files[jar] = File.createTempFile("benchmark", ".jar");
+            files[jar].deleteOnExit();
+            urls[jar] = files[jar].toURI().toURL();
+            try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(files[jar]))) {
+                for (int i = 0; i < entriesPerJar; i++) {
+                    int slot = jar * entriesPerJar + i;
+                    existing[slot] = "mod" + jar + "/pkg" + i % 20 + "/Class" + i + ".class";
+                    missing[slot] = "mod" + jar + "/pkg" + i % 20 + "/Missing" + i + ".class";
+                    // Half random, so it compresses about as well as a class file
+                    random.nextBytes(content);
+                    for (int b = 0; b < content.length; b += 2) {
+                        content[b] = 'a';
+                    }
+                    out.putNextEntry(new ZipEntry(existing[slot]));
+                    out.write(content);
+                }
+            }
+        }
+        index = new ClassPathIndex(urls);
+        classPath = new URLClassLoader(urls, null);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        index.close();
+        classPath.close();
+        for (File file : files) {
+            file.delete();
+        }
+    }
+
+    private int nextSlot() {
+        int slot = next;
+        next = slot + 1 == existing.length ? 0 : slot + 1;
+        return slot;
+    }
+
+    @Benchmark
+    public boolean indexHit() {
+        return index.locate(existing[nextSlot()]) != null;
+    }
+
+    @Benchmark
+    public boolean indexMiss() {
+        String name = missing[nextSlot()];
+        return index.locate(name) != null || index.mightContain(name);
+    }
+
+    @Benchmark
+    public boolean readHit() throws IOException {
+        return read(existing[nextSlot()]) != null;
+    }
+
+    @Benchmark
+    public boolean readMiss() throws IOException {
+        return read(missing[nextSlot()]) != null;
+    }
+
+    private byte[] read(String name) throws IOException {
+        URL resource = classPath.findResource(name);
+        if (resource == null) {
+            return null;
+        }
+        try (InputStream in = resource.openStream()) {
+            return in.readAllBytes();
+        }
+    }
+}
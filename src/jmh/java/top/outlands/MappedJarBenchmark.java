@@ -0,0 +1,120 @@
+package top.outlands;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import top.outlands.foundation.boot.MappedJar;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.net.URLConnection;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarFile;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Reading class entries of a jar through {@link MappedJar}, against the path it replaces: a {@link URLClassLoader}
+ * resource URL, opened as a {@code JarURLConnection} and read through its stream, like {@code getClassBytes} did.
+ * {@link JarFile} is there too, to tell the URL overhead apart from inflating. Entries are deflated and look like class
+ * files as far as compression goes: a few recurring names and descriptors.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MappedJarBenchmark {
+    private static final String[] TOKENS = {"java/lang/Object", "java/lang/String", "<init>", "()V", "(Ljava/lang/String;)V",
+            "Code", "LineNumberTable", "LocalVariableTable", "this", "net/minecraft/entity/Entity", "func_70071_h_", "field_70165_t"};
+
+    @Param({"2000"})
+    public int entries;
+
+    @Param({"4096"})
+    public int entrySize;
+
+    private File file;
+    private MappedJar mapped;
+    private JarFile jar;
+    private URLClassLoader classPath;
+    private String[] names;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        file = File.createTempFile("benchmark", ".jar");
+        file.deleteOnExit();
+        names = new String[entries];
+        Random random = new Random(42);
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(file))) {
+            for (int i = 0; i < entries; i++) {
+                names[i] = "net/minecraft/pkg" + i % 50 + "/Class" + i + ".class";
+                out.putNextEntry(new ZipEntry(names[i]));
+                StringBuilder content = new StringBuilder(entrySize);
+                while (content.length() < entrySize) {
+                    content.append(TOKENS[random.nextInt(TOKENS.length)]).append((char) random.nextInt(32));
+                }
+                out.write(content.substring(0, entrySize).getBytes());
+            }
+        }
+        mapped = MappedJar.open(file);
+        if (mapped == null) {
+            throw new IllegalStateException("Can't map " + file);
+        }
+        jar = new JarFile(file, false);
+        classPath = new URLClassLoader(new URL[]{file.toURI().toURL()}, null);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        jar.close();
+        classPath.close();
+        mapped.close();
+        file.delete();
+    }
+
+    private int nextSlot() {
+        int slot = next;
+        next = slot + 1 == entries ? 0 : slot + 1;
+        return slot;
+    }
+
+    @Benchmark
+    public byte[] mappedJar() throws IOException {
+        return mapped.readBytes(nextSlot());
+    }
+
+    @Benchmark
+    public byte[] jarUrlConnection() throws IOException {
+        URLConnection connection = classPath.findResource(names[nextSlot()]).openConnection();
+        try (InputStream in = connection.getInputStream()) {
+            byte[] bytes = new byte[(int) connection.getContentLengthLong()];
+            in.readNBytes(bytes, 0, bytes.length);
+            return bytes;
+        }
+    }
+
+    @Benchmark
+    public byte[] jarFile() throws IOException {
+        try (InputStream in = jar.getInputStream(jar.getEntry(names[nextSlot()]))) {
+            return in.readAllBytes();
+        }
+    }
+}
@@ -13,6 +13,9 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.jar.Manifest;
 
 public class LaunchClassLoader extends ActualClassLoader {
+    static {
+        ClassLoader.registerAsParallelCapable();
+    }
     private Set<String> classLoaderExceptions = new HashSet<String>();
     private Set<String> transformerExceptions = new HashSet<String>();
     /**
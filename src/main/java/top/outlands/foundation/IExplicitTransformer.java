@@ -1,7 +1,7 @@
 package top.outlands.foundation;
 
 /**
- * The new transformer type. It can bypass transformer exclusion but can't do wildcards matching.
+ * The new transformer type. It can bypass transformer exclusion, and targets exact class names or package prefixes.
  */
 public interface IExplicitTransformer {
     /**
@@ -0,0 +1,11 @@
+package top.outlands.foundation;
+
+/**
+ * Marks a transformer, global or explicit, whose {@code transform} does more than return the transformed bytes, like
+ * collecting state or defining classes of its own. With {@code foundation.classCache}, classes it may touch are always
+ * transformed, never served from or stored to the cache, since a cache hit skips every transformer.
+ * <p>
+ * Transformers that can't implement this, like Mixin's, are listed by class name in {@code foundation.classCache.stateful}.
+ */
+public interface IStatefulTransformer {
+}
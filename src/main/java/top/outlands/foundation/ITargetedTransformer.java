@@ -0,0 +1,35 @@
+package top.outlands.foundation;
+
+import net.minecraft.launchwrapper.IClassTransformer;
+
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * An {@link IClassTransformer} that tells which classes it may change, so it's only called for those instead of for
+ * every class. It still runs in priority order with every other transformer.
+ * <p>
+ * Targets are read once when the transformer is registered, they must not change afterwards.
+ */
+public interface ITargetedTransformer extends IClassTransformer {
+    /**
+     * @return transformed names of the classes to transform
+     */
+    default Set<String> getTargets() {
+        return Collections.emptySet();
+    }
+
+    /**
+     * @return prefixes of the transformed names to transform, like {@code "net.minecraft.client."}
+     */
+    default Set<String> getTargetPackages() {
+        return Collections.emptySet();
+    }
+
+    /**
+     * @return true to be called for every class after all, regardless of the targets
+     */
+    default boolean isGlobal() {
+        return false;
+    }
+}
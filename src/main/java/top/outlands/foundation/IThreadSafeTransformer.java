@@ -0,0 +1,11 @@
+package top.outlands.foundation;
+
+import net.minecraft.launchwrapper.IClassTransformer;
+
+/**
+ * Marks an {@link IClassTransformer} that may run on any thread, at any time before the class is requested, with no
+ * side effects besides returning the transformed bytes. With {@code foundation.speculate}, the leading thread-safe
+ * transformers of the chain are run ahead of demand on idle cores.
+ */
+public interface IThreadSafeTransformer extends IClassTransformer {
+}
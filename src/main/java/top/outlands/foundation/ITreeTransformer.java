@@ -0,0 +1,64 @@
+package top.outlands.foundation;
+
+import net.minecraft.launchwrapper.IClassTransformer;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.tree.ClassNode;
+
+/**
+ * An {@link IClassTransformer} working on a parsed {@link ClassNode}. Consecutive tree transformers in the chain share
+ * one node: the class is parsed once before the first of them and written once after the last, instead of once per
+ * transformer.
+ * <p>
+ * The node is parsed with frames kept, and is only written back if some transformer reports a change.
+ */
+public interface ITreeTransformer extends IClassTransformer {
+    /** Nothing changed, the bytes are kept as they are */
+    int NONE = 0;
+    /** The node changed, but frames don't need recomputing */
+    int CHANGED = 1;
+    /** The node changed in a way that needs frames recomputed, like new branches or locals */
+    int FRAMES = 2 | CHANGED;
+
+    /**
+     * @param name Untransformed class name.
+     * @param transformedName Transformed class name.
+     * @param node The class, shared with the tree transformers running next to this one. Modify it in place.
+     * @return {@link #NONE}, {@link #CHANGED} or {@link #FRAMES}
+     */
+    int transform(String name, String transformedName, ClassNode node);
+
+    /**
+     * For callers running this transformer on its own, parses and writes the class just for it
+     */
+    @Override
+    default byte[] transform(String name, String transformedName, byte[] basicClass) {
+        if (basicClass == null) {
+            return null;
+        }
+        ClassNode node = read(basicClass);
+        int flags = transform(name, transformedName, node);
+        return flags == NONE ? basicClass : write(node, flags);
+    }
+
+    /**
+     * @param basicClass class bytes
+     * @return the parsed class, frames kept
+     */
+    static ClassNode read(byte[] basicClass) {
+        ClassNode node = new ClassNode();
+        new ClassReader(basicClass).accept(node, 0);
+        return node;
+    }
+
+    /**
+     * @param node the class
+     * @param flags what the transformers reported, not {@link #NONE}
+     * @return class bytes; frames computed only if {@link #FRAMES} was reported
+     */
+    static byte[] write(ClassNode node, int flags) {
+        ClassWriter writer = new ClassWriter((flags & FRAMES) == FRAMES ? ClassWriter.COMPUTE_FRAMES : ClassWriter.COMPUTE_MAXS);
+        node.accept(writer);
+        return writer.toByteArray();
+    }
+}
@@ -42,6 +42,7 @@ public class LaunchHandler {
         blackboard = new HashMap<>();
         Thread.currentThread().setContextClassLoader(classLoader);
         fillTransformerHolder(classLoader.getTransformerHolder());
+        classLoader.startClassLoadProfile();
         
         TransformerDelegate.registerExplicitTransformer(
                 new ASMVisitorTransformer(),
@@ -117,6 +118,7 @@ public class LaunchHandler {
             final Class<?> clazz = Class.forName(launchTarget, false, classLoader);
             final Method mainMethod = clazz.getMethod("main", String[].class);
 
+            TransformerDelegate.printTransformerStats();
             LOGGER.info("Launching wrapped minecraft {}", launchTarget);
             mainMethod.invoke(null, (Object) argumentList.toArray(new String[0]));
         } catch (Exception e) {
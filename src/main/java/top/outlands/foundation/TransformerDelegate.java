@@ -2,9 +2,23 @@ package top.outlands.foundation;
 
 import net.minecraft.launchwrapper.IClassNameTransformer;
 import net.minecraft.launchwrapper.IClassTransformer;
+import org.objectweb.asm.tree.ClassNode;
+import top.outlands.foundation.boot.SpeculativePipeline;
+import top.outlands.foundation.boot.TransformEvent;
+import top.outlands.foundation.boot.TransformerDispatch;
 import top.outlands.foundation.boot.TransformerHolder;
+import top.outlands.foundation.boot.TransformerStats;
+import top.outlands.foundation.trie.PrefixTrie;
+import top.outlands.foundation.trie.TrieNode;
 
+import java.io.File;
+import java.lang.reflect.InvocationTargetException;
+import java.net.URL;
+import java.security.CodeSource;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 import static net.minecraft.launchwrapper.Launch.classLoader;
 import static top.outlands.foundation.boot.Foundation.LOGGER;
@@ -16,6 +30,24 @@ import static top.outlands.foundation.boot.TransformerHolder.*;
 public class TransformerDelegate {
 
     private static final boolean VERBOSE = Boolean.parseBoolean(System.getProperty("foundation.verbose", "false"));
+    private static final boolean STATS = Boolean.parseBoolean(System.getProperty("foundation.transformerStats", "false"));
+    private static final TransformerStats transformerStats = STATS ? new TransformerStats() : null;
+    private static final Map<Class<?>, Long> classStamps = new ConcurrentHashMap<>();
+    private static final Set<String> STATEFUL = Set.of(System.getProperty("foundation.classCache.stateful",
+            "org.spongepowered.asm.mixin.transformer.Proxy").split(","));
+    private static final int REMAP_CACHE_SIZE = Integer.parseInt(System.getProperty("foundation.remapCacheSize", "65536"));
+    private static final TransformerRegistry registry = new TransformerRegistry();
+    // One map per direction; a rename transformer isn't a bijection, an unmapped name may remap to itself
+    private static final Map<String, String> remapped = new ConcurrentHashMap<>(1024);
+    private static final Map<String, String> unmapped = new ConcurrentHashMap<>(1024);
+    private static final LongAdder remapHits = new LongAdder();
+    private static final LongAdder remapMisses = new LongAdder();
+    private static final Comparator<IExplicitTransformer> EXPLICIT_PRIORITY = Comparator.comparingInt(IExplicitTransformer::getPriority);
+    private static final Map<String, List<IExplicitTransformer>> explicitPrefixes = new LinkedHashMap<>();
+    private static volatile PrefixTrie<IExplicitTransformer[]> explicitPrefixTrie = new PrefixTrie<>();
+    private static Object[] fingerprintedChain = new Object[0];
+    private static long chainFingerprint;
+    private static volatile TransformerDispatch dispatch = new TransformerDispatch(new Object[0]);
     /**
      * @return list of transformers.
      */
@@ -24,7 +56,16 @@ public class TransformerDelegate {
     }
 
     /**
-     * Get explicit transformers map. It's exact same map in used, you can modify it at will.
+     * @return a number bumped whenever the transformer chain changes
+     */
+    public static long getTransformerVersion() {
+        return registry.getVersion();
+    }
+
+    /**
+     * Get explicit transformers map. It's exact same map in used, you can modify it at will; it's concurrent, and a
+     * queue in it may be in use by a running class load, so replace queues rather than modifying them.
+     * Prefix targets are not in it.
      * @return the map
      */
     public static Map<String, PriorityQueue<IExplicitTransformer>> getExplicitTransformers() {
@@ -40,13 +81,16 @@ public class TransformerDelegate {
         LOGGER.debug("Registering rename transformer: {}", transformer.getClass().getSimpleName());
         if (renameTransformer == null) {
             renameTransformer = transformer;
+            remapped.clear();
+            unmapped.clear();
             registerTransformer((IClassTransformer) transformer);
         }
     }
 
     /**
      * Call this to register an explicit transformer.
-     * @param targets Target classes' name.
+     * @param targets Target classes' name. A name ending with {@code '.'}, like {@code "net.minecraft.client."}, targets
+     *                every class whose transformed name starts with it, for as long as the transformer stays registered.
      * @param className Class name of the transformer.
      */
     public static void registerExplicitTransformer(String className, String... targets) {
@@ -68,13 +112,16 @@ public class TransformerDelegate {
         LOGGER.debug("Registering explicit transformer instance: {}", transformer.getClass().getSimpleName());
         try {
             for (var target : targets) {
-                if (explicitTransformers.containsKey(target)) {
-                    explicitTransformers.get(target).add(transformer);
-                } else {
-                    var transformerSet = new PriorityQueue<>(Comparator.comparingInt(IExplicitTransformer::getPriority));
-                    transformerSet.add(transformer);
-                    explicitTransformers.put(target, transformerSet);
+                if (target.endsWith(".")) {
+                    registerExplicitPrefix(target, transformer);
+                    continue;
                 }
+                // Queues are copied on write, a class load may be draining the current one
+                explicitTransformers.compute(target, (k, queue) -> {
+                    var transformerSet = queue == null ? new PriorityQueue<>(EXPLICIT_PRIORITY) : new PriorityQueue<>(queue);
+                    transformerSet.add(transformer);
+                    return transformerSet;
+                });
             }
 
         } catch (Exception e) {
@@ -82,6 +129,23 @@ public class TransformerDelegate {
         }
     }
 
+    /**
+     * Prefix targets are looked up in a trie that is rebuilt and republished on every registration, so class loads
+     * read it without locking
+     */
+    private static synchronized void registerExplicitPrefix(String prefix, IExplicitTransformer transformer) {
+        explicitPrefixes.computeIfAbsent(prefix, k -> new ArrayList<>()).add(transformer);
+        PrefixTrie<IExplicitTransformer[]> trie = new PrefixTrie<>();
+        for (var it = explicitPrefixes.entrySet().iterator(); it.hasNext(); ) {
+            var entry = it.next();
+            if (!trie.put(entry.getKey(), entry.getValue().toArray(new IExplicitTransformer[0]))) {
+                LOGGER.error("Can't target prefix {} with explicit transformer {}", entry.getKey(), transformer.getClass().getName());
+                it.remove();
+            }
+        }
+        explicitPrefixTrie = trie;
+    }
+
     /**
      * Same as {@link net.minecraft.launchwrapper.LaunchClassLoader#registerTransformer(String)}
      * @param transformerClassName class name
@@ -94,12 +158,73 @@ public class TransformerDelegate {
         try {
             IClassTransformer transformer = (IClassTransformer) classLoader.loadClass(transformerClassName).getConstructor().newInstance();
             transformers.add(transformer);
-            transformers.sort(Comparator.comparingInt(IClassTransformer::getPriority));
         } catch (Exception e) {
             LOGGER.error("Error registering transformer class {}", transformerClassName, e);
         }
     }
 
+    /**
+     * Register many transformers at once. The classes are loaded and constructed concurrently, on a few threads of
+     * their own that see the launch class loader as their context class loader, then every transformer that could be
+     * constructed joins the chain in one step, in the given order among equal priorities.
+     * @param transformerClassNames class names
+     * @return the failures, by class name, in the given order; each names the transformer, with what it threw as the cause.
+     * Empty if every transformer was registered
+     */
+    public static Map<String, Throwable> registerTransformers(Collection<String> transformerClassNames) {
+        final String[] names = transformerClassNames.stream().map(s -> s.contains(".") ? s : s.replace('/', '.')).toArray(String[]::new);
+        final IClassTransformer[] instances = new IClassTransformer[names.length];
+        final Throwable[] failures = new Throwable[names.length];
+        LOGGER.debug("Registering transformers: {}", Arrays.toString(names));
+        final int threads = Math.min(names.length, Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors())));
+        final AtomicInteger cursor = new AtomicInteger();
+        final Runnable worker = () -> {
+            for (int i = cursor.getAndIncrement(); i < names.length; i = cursor.getAndIncrement()) {
+                try {
+                    instances[i] = (IClassTransformer) classLoader.loadClass(names[i]).getConstructor().newInstance();
+                } catch (Exception | LinkageError e) {
+                    final Throwable cause = e instanceof InvocationTargetException ? e.getCause() : e;
+                    failures[i] = new IllegalStateException("Could not register transformer " + names[i], cause);
+                }
+            }
+        };
+        final Thread[] workers = new Thread[Math.max(0, threads - 1)];
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = new Thread(worker, "Foundation Transformer Registration #" + i);
+            workers[i].setDaemon(true);
+            workers[i].setContextClassLoader(classLoader);
+            workers[i].start();
+        }
+        final Thread current = Thread.currentThread();
+        final ClassLoader context = current.getContextClassLoader();
+        current.setContextClassLoader(classLoader);
+        try {
+            worker.run();
+        } finally {
+            current.setContextClassLoader(context);
+        }
+        for (Thread thread : workers) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while registering transformers", e);
+            }
+        }
+        final List<IClassTransformer> registered = new ArrayList<>(names.length);
+        final Map<String, Throwable> failed = new LinkedHashMap<>();
+        for (int i = 0; i < names.length; i++) {
+            if (failures[i] != null) {
+                LOGGER.error("Error registering transformer class {}", names[i], failures[i]);
+                failed.put(names[i], failures[i]);
+            } else {
+                registered.add(instances[i]);
+            }
+        }
+        transformers.addAll(registered);
+        return failed;
+    }
+
     /**
      * In case you want to control how the transformer is initialized, in which you could <b>new</b> it yourself.
      * @param transformer The transformer
@@ -116,8 +241,7 @@ public class TransformerDelegate {
     public static void unRegisterTransformer(String name) {
         LOGGER.debug("Unregistering all transformers call: {}", name);
         try {
-            transformers.stream().filter(transformer -> transformer.getClass().getName().equals(name)).forEach(transformers::remove);
-            transformers.sort(Comparator.comparingInt(IClassTransformer::getPriority));
+            transformers.removeIf(transformer -> transformer.getClass().getName().equals(name));
         } catch (Exception e) {
             LOGGER.error("Error removing transformer class {}", name, e);
         }
@@ -131,25 +255,288 @@ public class TransformerDelegate {
         LOGGER.debug("Unregistering transformer: {}", transformer.getClass().getSimpleName());
         try {
             transformers.remove(transformer);
-            transformers.sort(Comparator.comparingInt(IClassTransformer::getPriority));
         } catch (Exception e) {
             LOGGER.error("Error removing transformer class {}", transformer, e);
         }
     }
 
+    /**
+     * Fingerprint of everything that may touch a class: the global transformer chain plus the explicit transformers
+     * targeting it. Used to invalidate persisted transformation results.
+     * @param transformedName Transformed class name.
+     * @return the fingerprint
+     */
+    private static long fingerprint(String transformedName) {
+        long fingerprint = chainFingerprint();
+        PriorityQueue<IExplicitTransformer> queue = explicitTransformers.get(transformedName);
+        if (queue != null) {
+            for (IExplicitTransformer transformer : queue) {
+                fingerprint ^= stamp(transformer.getClass()) * 31 + transformer.getPriority();
+            }
+        }
+        for (TrieNode<IExplicitTransformer[]> node : explicitPrefixTrie.getKeyValueNodesAlongPath(transformedName)) {
+            for (IExplicitTransformer transformer : node.getValue()) {
+                fingerprint ^= stamp(transformer.getClass()) * 31 + transformer.getPriority();
+            }
+        }
+        return fingerprint;
+    }
+
+    /**
+     * A cache hit skips every transformer, so a class that a stateful transformer may touch is never cached
+     * @param transformedName Transformed class name.
+     * @return if the class may be served from and stored to the persistent class cache
+     */
+    private static boolean isCacheable(String transformedName) {
+        final TransformerDispatch current = dispatch();
+        final Object[] chain = current.getChain();
+        final BitSet selected = current.select(transformedName);
+        for (int i = selected.nextSetBit(0); i >= 0; i = selected.nextSetBit(i + 1)) {
+            if (isStateful(chain[i])) {
+                return false;
+            }
+        }
+        PriorityQueue<IExplicitTransformer> queue = explicitTransformers.get(transformedName);
+        if (queue != null) {
+            for (IExplicitTransformer transformer : queue) {
+                if (isStateful(transformer)) {
+                    return false;
+                }
+            }
+        }
+        for (TrieNode<IExplicitTransformer[]> node : explicitPrefixTrie.getKeyValueNodesAlongPath(transformedName)) {
+            for (IExplicitTransformer transformer : node.getValue()) {
+                if (isStateful(transformer)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static boolean isStateful(Object transformer) {
+        return transformer instanceof IStatefulTransformer || STATEFUL.contains(transformer.getClass().getName());
+    }
+
+    private static synchronized long chainFingerprint() {
+        Object[] chain = registry.getSnapshot();
+        if (chain != fingerprintedChain) {
+            long fingerprint = chain.length;
+            for (Object transformer : chain) {
+                fingerprint = fingerprint * 0x9E3779B97F4A7C15L + stamp(transformer.getClass()) * 31 + ((IClassTransformer) transformer).getPriority();
+            }
+            fingerprintedChain = chain;
+            chainFingerprint = fingerprint;
+        }
+        return chainFingerprint;
+    }
+
+    /**
+     * A transformer class is identified by its name and the size and modification time of wherever it was loaded from,
+     * so updating a coremod jar changes the fingerprint.
+     */
+    private static long stamp(Class<?> transformerClass) {
+        return classStamps.computeIfAbsent(transformerClass, c -> {
+            long stamp = c.getName().hashCode();
+            try {
+                CodeSource codeSource = c.getProtectionDomain().getCodeSource();
+                URL location = codeSource == null ? null : codeSource.getLocation();
+                if (location != null && "jar".equals(location.getProtocol())) {
+                    String path = location.getPath();
+                    int separator = path.indexOf("!/");
+                    location = new URL(separator == -1 ? path : path.substring(0, separator));
+                }
+                if (location != null && "file".equals(location.getProtocol())) {
+                    File file = new File(location.toURI());
+                    stamp = (stamp * 31 + file.length()) * 31 + file.lastModified();
+                }
+            } catch (Exception e) {
+                LOGGER.debug("Can't locate transformer class {}", c.getName(), e);
+            }
+            return stamp;
+        });
+    }
+
+    /**
+     * The dispatch index is rebuilt whenever a new chain was published since it was built
+     */
+    private static TransformerDispatch dispatch() {
+        Object[] chain = registry.getSnapshot();
+        TransformerDispatch current = dispatch;
+        if (chain == current.getChain()) {
+            return current;
+        }
+        current = new TransformerDispatch(chain);
+        for (int i = 0; i < chain.length; i++) {
+            if (chain[i] instanceof ITargetedTransformer targeted && !targeted.isGlobal()) {
+                current.addTargeted(i, targeted.getTargets(), targeted.getTargetPackages());
+            } else {
+                current.addGlobal(i);
+            }
+        }
+        dispatch = current;
+        classLoader.discardSpeculations();
+        return current;
+    }
+
+    /**
+     * Each direction caches its own answers, up to {@code foundation.remapCacheSize} names each; past that, new names are
+     * remapped every time
+     * @param name untransformed class name
+     * @return transformed class name
+     */
+    private static String remapClassName(String name) {
+        final IClassNameTransformer transformer = renameTransformer;
+        if (transformer == null) {
+            return name;
+        }
+        String transformedName = remapped.get(name);
+        if (transformedName != null) {
+            remapHits.increment();
+            return transformedName;
+        }
+        remapMisses.increment();
+        transformedName = transformer.remapClassName(name);
+        if (transformedName != null && remapped.size() < REMAP_CACHE_SIZE) {
+            remapped.put(name, transformedName);
+        }
+        return transformedName;
+    }
+
+    /**
+     * @param transformedName transformed class name
+     * @return untransformed class name
+     */
+    private static String unmapClassName(String transformedName) {
+        final IClassNameTransformer transformer = renameTransformer;
+        if (transformer == null) {
+            return transformedName;
+        }
+        String name = unmapped.get(transformedName);
+        if (name != null) {
+            remapHits.increment();
+            return name;
+        }
+        remapMisses.increment();
+        name = transformer.unmapClassName(transformedName);
+        if (name != null && unmapped.size() < REMAP_CACHE_SIZE) {
+            unmapped.put(transformedName, name);
+        }
+        return name;
+    }
+
+    /**
+     * Print what each transformer cost so far, most expensive first. Does nothing unless {@code foundation.transformerStats} is set.
+     */
+    public static void printTransformerStats() {
+        if (STATS) {
+            LOGGER.info("Transformer costs:");
+            transformerStats.print(LOGGER::info);
+        }
+    }
+
+    private static void commitTransformEvent(TransformEvent event, Object transformer, String transformedName, int bytesIn, byte[] basicClass) {
+        if (event.shouldCommit()) {
+            event.transformer = transformer.getClass();
+            event.className = transformedName;
+            event.bytesIn = bytesIn;
+            event.bytesOut = basicClass == null ? -1 : basicClass.length;
+            event.commit();
+        }
+    }
+
     /**
      * We use lambda trick to fill method implementations after the class loader ready
      * @param holder The one and only handler
      */
     static void fillTransformerHolder(TransformerHolder holder) {
-        explicitTransformers = new HashMap<>(20);
-        transformers = new LinkedList<>();
+        explicitTransformers = new ConcurrentHashMap<>(20);
+        transformers = registry;
+        // Loaded now, it can't be loaded from inside the transformer chain
+        LOGGER.debug("Dispatching targets of {}, {}, {} and {} through {}", ITargetedTransformer.class.getName(), ITreeTransformer.class.getName(),
+                IThreadSafeTransformer.class.getName(), IStatefulTransformer.class.getName(), TransformerRegistry.SnapshotIterator.class.getName());
         holder.runTransformersFunction = (name, transformedName, basicClass) -> {
-            for (final IClassTransformer transformer : Collections.unmodifiableList(transformers)) {
-                basicClass = transformer.transform(name, transformedName, basicClass);
+            final TransformerDispatch current = dispatch();
+            final Object[] chain = current.getChain();
+            final BitSet selected = current.select(transformedName);
+            // The leading thread-safe transformers may have run ahead of demand already
+            int from = 0;
+            final SpeculativePipeline.Speculation speculation = classLoader.takeSpeculation(transformedName, chain, basicClass);
+            if (speculation != null) {
+                basicClass = speculation.output();
+                from = speculation.resumeFrom();
+            }
+            // Runs of tree transformers share one node, parsed before the run and written after it
+            ClassNode node = null;
+            int flags = ITreeTransformer.NONE;
+            for (int i = selected.nextSetBit(from); i >= 0; i = selected.nextSetBit(i + 1)) {
+                final IClassTransformer transformer = (IClassTransformer) chain[i];
+                final TransformEvent event = new TransformEvent();
+                event.begin();
+                if (transformer instanceof ITreeTransformer tree && (node != null || basicClass != null)) {
+                    if (node == null) {
+                        node = ITreeTransformer.read(basicClass);
+                        flags = ITreeTransformer.NONE;
+                    }
+                    final int result;
+                    if (STATS) {
+                        final long allocated = transformerStats.allocatedBytes();
+                        final long start = System.nanoTime();
+                        result = tree.transform(name, transformedName, node);
+                        transformerStats.record(transformer, System.nanoTime() - start, transformerStats.allocatedBytes() - allocated, 0, result == ITreeTransformer.NONE);
+                    } else {
+                        result = tree.transform(name, transformedName, node);
+                    }
+                    flags |= result;
+                    commitTransformEvent(event, transformer, transformedName, -1, null);
+                    continue;
+                }
+                if (node != null) {
+                    if (flags != ITreeTransformer.NONE) {
+                        basicClass = ITreeTransformer.write(node, flags);
+                    }
+                    node = null;
+                }
+                final int bytesIn = basicClass == null ? -1 : basicClass.length;
+                if (STATS) {
+                    final byte[] input = basicClass;
+                    final long allocated = transformerStats.allocatedBytes();
+                    final long start = System.nanoTime();
+                    basicClass = transformer.transform(name, transformedName, basicClass);
+                    transformerStats.record(transformer, System.nanoTime() - start, transformerStats.allocatedBytes() - allocated, input, basicClass);
+                } else {
+                    basicClass = transformer.transform(name, transformedName, basicClass);
+                }
+                commitTransformEvent(event, transformer, transformedName, bytesIn, basicClass);
+            }
+            if (node != null && flags != ITreeTransformer.NONE) {
+                basicClass = ITreeTransformer.write(node, flags);
             }
             return basicClass;
         };
+        holder.registerTransformersFunction = TransformerDelegate::registerTransformers;
+        holder.speculateFunction = (name, transformedName, basicClass) -> {
+            final TransformerDispatch current = dispatch();
+            final Object[] chain = current.getChain();
+            final BitSet selected = current.select(transformedName);
+            final byte[] input = basicClass;
+            int i = selected.nextSetBit(0);
+            for (; i >= 0 && chain[i] instanceof IThreadSafeTransformer transformer; i = selected.nextSetBit(i + 1)) {
+                if (STATS) {
+                    final byte[] before = basicClass;
+                    final long allocated = transformerStats.allocatedBytes();
+                    final long start = System.nanoTime();
+                    basicClass = transformer.transform(name, transformedName, basicClass);
+                    transformerStats.record(transformer, System.nanoTime() - start, transformerStats.allocatedBytes() - allocated, before, basicClass);
+                } else {
+                    basicClass = transformer.transform(name, transformedName, basicClass);
+                }
+            }
+            if (i == selected.nextSetBit(0)) {
+                return null;
+            }
+            return new SpeculativePipeline.Speculation(transformedName, chain, i < 0 ? chain.length : i, input, basicClass);
+        };
         holder.registerTransformerFunction = s -> {
             if (!s.contains(".")) {
                 s = s.replace('/', '.');
@@ -157,35 +544,45 @@ public class TransformerDelegate {
             try {
                 IClassTransformer transformer = (IClassTransformer) classLoader.loadClass(s).getConstructor().newInstance();
                 transformers.add(transformer);
-                transformers.sort(Comparator.comparingInt(IClassTransformer::getPriority));
             } catch (Exception e) {
                 LOGGER.error("Error registering transformer class {}", s, e);
             }
         };
         holder.runExplicitTransformersFunction = (name, basicClass) -> {
-            if (explicitTransformers.containsKey(name)) {
-                PriorityQueue<IExplicitTransformer> queue = explicitTransformers.get(name);
-                if (queue != null) {
-                    while (!queue.isEmpty()) {
-                        basicClass = queue.poll().transform(basicClass); // We are not doing hotswap, so classes only loaded once. Let's free their memory
+            // We are not doing hotswap, so classes only loaded once. Let's free their memory
+            final PriorityQueue<IExplicitTransformer> queue = explicitTransformers.remove(name);
+            final PrefixTrie<IExplicitTransformer[]> prefixes = explicitPrefixTrie;
+            final List<TrieNode<IExplicitTransformer[]>> prefixed = prefixes.size() == 0 ? Collections.emptyList() : prefixes.getKeyValueNodesAlongPath(name);
+            if (queue != null || !prefixed.isEmpty()) {
+                // The queue is only read, a fingerprint may be iterating it
+                final List<IExplicitTransformer> run = queue == null ? new ArrayList<>() : new ArrayList<>(queue);
+                for (TrieNode<IExplicitTransformer[]> node : prefixed) {
+                    Collections.addAll(run, node.getValue());
+                }
+                run.sort(EXPLICIT_PRIORITY);
+                for (final IExplicitTransformer transformer : run) {
+                    final TransformEvent event = new TransformEvent();
+                    event.begin();
+                    final int bytesIn = basicClass == null ? -1 : basicClass.length;
+                    if (STATS) {
+                        final byte[] input = basicClass;
+                        final long allocated = transformerStats.allocatedBytes();
+                        final long start = System.nanoTime();
+                        basicClass = transformer.transform(basicClass);
+                        transformerStats.record(transformer, System.nanoTime() - start, transformerStats.allocatedBytes() - allocated, input, basicClass);
+                    } else {
+                        basicClass = transformer.transform(basicClass);
                     }
-                    explicitTransformers.remove(name); // GC
+                    commitTransformEvent(event, transformer, name, bytesIn, basicClass);
                 }
             }
             return basicClass;
         };
-        holder.transformNameFunction = s -> {
-            if (renameTransformer != null) {
-                return renameTransformer.remapClassName(s);
-            }
-            return s;
-        };
-        holder.unTransformNameFunction = s -> {
-            if (renameTransformer != null) {
-                return renameTransformer.unmapClassName(s);
-            }
-            return s;
-        };
+        holder.transformNameFunction = TransformerDelegate::remapClassName;
+        holder.unTransformNameFunction = TransformerDelegate::unmapClassName;
+        holder.transformerFingerprintFunction = TransformerDelegate::fingerprint;
+        holder.cacheableFunction = TransformerDelegate::isCacheable;
+        holder.transformerVersionFunction = TransformerDelegate::getTransformerVersion;
         holder.debugPrinter = () -> {
             LOGGER.info("Running transformers: ");
             getTransformers().stream().map(t -> t.toString() + " : " + t.getPriority()).forEach(s -> LOGGER.info(s));
@@ -193,6 +590,11 @@ public class TransformerDelegate {
             classLoader.getTransformerExclusions().forEach(s -> LOGGER.info(s));
             LOGGER.info("Class Paths: ");
             Arrays.stream(classLoader.getURLs()).forEach(s -> LOGGER.info(s));
+            final long hits = remapHits.sum();
+            final long lookups = hits + remapMisses.sum();
+            LOGGER.info("Class name remap cache: {} names, {} hits, {} misses, {}% hit rate", remapped.size() + unmapped.size(), hits, lookups - hits,
+                    lookups == 0 ? 0 : hits * 100 / lookups);
+            printTransformerStats();
         };
     }
 }
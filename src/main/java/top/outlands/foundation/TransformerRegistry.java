@@ -0,0 +1,207 @@
+package top.outlands.foundation;
+
+import net.minecraft.launchwrapper.IClassTransformer;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Predicate;
+
+/**
+ * The transformer chain. Every change publishes a new priority-sorted array and bumps the version, so a class load
+ * reads the chain with one volatile read and iterates it without locking or allocating, and caches tell a changed
+ * chain apart by the version or by the array identity.
+ * <p>
+ * Transformers of the same priority keep their registration order. Changes are serialized; iterating always sees
+ * the chain as it was when the iteration started, and removing through the iterator removes from the registry.
+ */
+public class TransformerRegistry extends AbstractList<IClassTransformer> {
+    private static final Comparator<IClassTransformer> PRIORITY = Comparator.comparingInt(IClassTransformer::getPriority);
+    private volatile IClassTransformer[] snapshot = new IClassTransformer[0];
+    private volatile long version;
+
+    /**
+     * @return the current chain, in the order it runs; not to be modified
+     */
+    public IClassTransformer[] getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * @return a number bumped after every change of the chain, after the new chain is published
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    private void publish(IClassTransformer[] chain) {
+        Arrays.sort(chain, PRIORITY);
+        IClassTransformer[] current = snapshot;
+        boolean same = chain.length == current.length;
+        for (int i = 0; same && i < chain.length; i++) {
+            same = chain[i] == current[i];
+        }
+        if (!same) {
+            snapshot = chain;
+            version++;
+        }
+    }
+
+    @Override
+    public IClassTransformer get(int index) {
+        return snapshot[index];
+    }
+
+    @Override
+    public int size() {
+        return snapshot.length;
+    }
+
+    @Override
+    public synchronized boolean add(IClassTransformer transformer) {
+        add(size(), transformer);
+        return true;
+    }
+
+    /**
+     * The chain stays sorted by priority, so the index only matters among transformers of the same priority
+     */
+    @Override
+    public synchronized void add(int index, IClassTransformer transformer) {
+        IClassTransformer[] current = snapshot;
+        if (index < 0 || index > current.length) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        IClassTransformer[] chain = new IClassTransformer[current.length + 1];
+        System.arraycopy(current, 0, chain, 0, index);
+        chain[index] = transformer;
+        System.arraycopy(current, index, chain, index + 1, current.length - index);
+        publish(chain);
+    }
+
+    @Override
+    public synchronized boolean addAll(Collection<? extends IClassTransformer> transformers) {
+        if (transformers.isEmpty()) {
+            return false;
+        }
+        IClassTransformer[] current = snapshot;
+        IClassTransformer[] chain = Arrays.copyOf(current, current.length + transformers.size());
+        int i = current.length;
+        for (IClassTransformer transformer : transformers) {
+            chain[i++] = transformer;
+        }
+        publish(chain);
+        return true;
+    }
+
+    @Override
+    public synchronized IClassTransformer set(int index, IClassTransformer transformer) {
+        IClassTransformer[] chain = snapshot.clone();
+        IClassTransformer previous = chain[index];
+        chain[index] = transformer;
+        publish(chain);
+        return previous;
+    }
+
+    @Override
+    public synchronized IClassTransformer remove(int index) {
+        IClassTransformer[] current = snapshot;
+        IClassTransformer previous = current[index];
+        IClassTransformer[] chain = new IClassTransformer[current.length - 1];
+        System.arraycopy(current, 0, chain, 0, index);
+        System.arraycopy(current, index + 1, chain, index, current.length - index - 1);
+        publish(chain);
+        return previous;
+    }
+
+    @Override
+    public synchronized boolean remove(Object transformer) {
+        int index = indexOf(transformer);
+        if (index == -1) {
+            return false;
+        }
+        remove(index);
+        return true;
+    }
+
+    @Override
+    public synchronized boolean removeIf(Predicate<? super IClassTransformer> filter) {
+        IClassTransformer[] chain = Arrays.stream(snapshot).filter(filter.negate()).toArray(IClassTransformer[]::new);
+        if (chain.length == snapshot.length) {
+            return false;
+        }
+        publish(chain);
+        return true;
+    }
+
+    @Override
+    public synchronized void clear() {
+        publish(new IClassTransformer[0]);
+    }
+
+    /**
+     * The chain stays sorted by priority, so the comparator only orders transformers of the same priority
+     */
+    @Override
+    public synchronized void sort(Comparator<? super IClassTransformer> comparator) {
+        IClassTransformer[] chain = snapshot.clone();
+        if (comparator != null) {
+            Arrays.sort(chain, comparator);
+        }
+        publish(chain);
+    }
+
+    @Override
+    public Object[] toArray() {
+        return snapshot.clone();
+    }
+
+    @Override
+    public Iterator<IClassTransformer> iterator() {
+        return new SnapshotIterator(this);
+    }
+
+    @Override
+    public Spliterator<IClassTransformer> spliterator() {
+        return Spliterators.spliterator(snapshot, Spliterator.ORDERED | Spliterator.IMMUTABLE);
+    }
+
+    static final class SnapshotIterator implements Iterator<IClassTransformer> {
+        private final TransformerRegistry registry;
+        private final IClassTransformer[] chain;
+        private int next;
+        private IClassTransformer last;
+
+        private SnapshotIterator(TransformerRegistry registry) {
+            this.registry = registry;
+            this.chain = registry.snapshot;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next < chain.length;
+        }
+
+        @Override
+        public IClassTransformer next() {
+            if (next >= chain.length) {
+                throw new NoSuchElementException();
+            }
+            return last = chain[next++];
+        }
+
+        @Override
+        public void remove() {
+            if (last == null) {
+                throw new IllegalStateException();
+            }
+            registry.remove(last);
+            last = null;
+        }
+    }
+}
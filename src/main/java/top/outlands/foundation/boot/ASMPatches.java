@@ -0,0 +1,99 @@
+package top.outlands.foundation.boot;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * Patches of the ASM classes handed to transformers, done with the ASM copy of the boot class path. The classes being
+ * patched are the ones the launch class loader defines, so patching them with themselves isn't an option.
+ */
+public class ASMPatches {
+    private static final int API = Opcodes.ASM9;
+    private static final String FOUNDATION = "top/outlands/foundation/boot/Foundation";
+    private static final String CLASS_WRITER_TRANSFORMER = "top/outlands/foundation/transformer/ASMClassWriterTransformer";
+
+    /**
+     * Raise the api of {@code ClassVisitor}, {@code FieldVisitor} and {@code MethodVisitor} subclasses built for an
+     * older ASM to the current one, recording who did so
+     * @param basicClass bytes of one of the visitor classes
+     * @return the patched bytes
+     */
+    public static byte[] patchVisitor(byte[] basicClass) {
+        final ClassReader reader = new ClassReader(basicClass);
+        final String owner = reader.getClassName();
+        final String delegate = "(IL" + owner + ";)V";
+        final ClassWriter writer = new ClassWriter(reader, flagsFor(reader));
+        reader.accept(new ClassVisitor(API, writer) {
+            @Override
+            public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+                final MethodVisitor mv = super.visitMethod(access, name, descriptor, signature, exceptions);
+                if (!"<init>".equals(name) || !("(I)V".equals(descriptor) || delegate.equals(descriptor))) {
+                    return mv;
+                }
+                return new MethodVisitor(API, mv) {
+                    @Override
+                    public void visitInsn(int opcode) {
+                        if (opcode == Opcodes.RETURN) {
+                            // if (api < ASM9) { this.api = ASM9; Foundation.add(getClass().getName()); }
+                            final Label skip = new Label();
+                            super.visitVarInsn(Opcodes.ALOAD, 0);
+                            super.visitFieldInsn(Opcodes.GETFIELD, owner, "api", "I");
+                            super.visitLdcInsn(API);
+                            super.visitJumpInsn(Opcodes.IF_ICMPGE, skip);
+                            super.visitVarInsn(Opcodes.ALOAD, 0);
+                            super.visitLdcInsn(API);
+                            super.visitFieldInsn(Opcodes.PUTFIELD, owner, "api", "I");
+                            super.visitVarInsn(Opcodes.ALOAD, 0);
+                            super.visitMethodInsn(Opcodes.INVOKEVIRTUAL, "java/lang/Object", "getClass", "()Ljava/lang/Class;", false);
+                            super.visitMethodInsn(Opcodes.INVOKEVIRTUAL, "java/lang/Class", "getName", "()Ljava/lang/String;", false);
+                            super.visitMethodInsn(Opcodes.INVOKESTATIC, FOUNDATION, "add", "(Ljava/lang/String;)V", false);
+                            super.visitLabel(skip);
+                        }
+                        super.visitInsn(opcode);
+                    }
+                };
+            }
+        }, reader.readShort(6) >= Opcodes.V1_6 ? ClassReader.SKIP_FRAMES : 0);
+        return writer.toByteArray();
+    }
+
+    /**
+     * Route {@code ClassWriter.getCommonSuperClass} to {@code ASMClassWriterTransformer.getCommonSuperClass}
+     * @param basicClass bytes of {@code ClassWriter}
+     * @return the patched bytes
+     */
+    public static byte[] patchClassWriter(byte[] basicClass) {
+        final ClassReader reader = new ClassReader(basicClass);
+        final ClassWriter writer = new ClassWriter(reader, 0);
+        reader.accept(new ClassVisitor(API, writer) {
+            @Override
+            public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+                final MethodVisitor mv = super.visitMethod(access, name, descriptor, signature, exceptions);
+                if (!"getCommonSuperClass".equals(name) || !"(Ljava/lang/String;Ljava/lang/String;)Ljava/lang/String;".equals(descriptor)) {
+                    return mv;
+                }
+                // The new body is written right away, the old one is dropped
+                mv.visitCode();
+                mv.visitVarInsn(Opcodes.ALOAD, 1);
+                mv.visitVarInsn(Opcodes.ALOAD, 2);
+                mv.visitMethodInsn(Opcodes.INVOKESTATIC, CLASS_WRITER_TRANSFORMER, name, descriptor, false);
+                mv.visitInsn(Opcodes.ARETURN);
+                mv.visitMaxs(2, 3);
+                mv.visitEnd();
+                return null;
+            }
+        }, 0);
+        return writer.toByteArray();
+    }
+
+    /**
+     * ASM itself targets Java 5, which has no stack map frames; recompute them in case a later release doesn't
+     */
+    private static int flagsFor(ClassReader reader) {
+        return reader.readShort(6) >= Opcodes.V1_6 ? ClassWriter.COMPUTE_FRAMES : ClassWriter.COMPUTE_MAXS;
+    }
+}
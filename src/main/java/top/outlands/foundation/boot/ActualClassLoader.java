@@ -19,39 +19,78 @@ import java.lang.reflect.Method;
 import java.net.*;
 import java.security.CodeSigner;
 import java.security.CodeSource;
+import java.security.PermissionCollection;
+import java.security.ProtectionDomain;
+import java.security.SecureClassLoader;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 import java.util.jar.Attributes;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 import java.util.jar.Manifest;
+import java.util.zip.ZipEntry;
 
 import static top.outlands.foundation.boot.Foundation.LOGGER;
 import static top.outlands.foundation.boot.TransformerHolder.transformers;
 
 @SuppressWarnings({"deprecation", "unused"})
 public class ActualClassLoader extends URLClassLoader {
-    
+    static {
+        ClassLoader.registerAsParallelCapable();
+    }
+
     public static final int BUFFER_SIZE = 1 << 12;
+    private static final int MAX_POOLED_BUFFERS = 8;
+    private static final int MAX_POOLED_BUFFER_SIZE = 1 << 20;
     private final List<URL> sources;
+    private final ClassPathIndex classPathIndex;
     private final Set<String> jarNames = new HashSet<>();
     private ClassLoader parent = getClass().getClassLoader();
     public static final PrefixTrie<Boolean> classLoaderExceptions = new PrefixTrie<>();
     public static final PrefixTrie<Boolean> transformerExceptions = new PrefixTrie<>();
     private final Map<String, Class<?>> cachedClasses = new ConcurrentHashMap<>();
-    private final Set<String> invalidClasses = new HashSet<>(1024);
+    private final ClassLoadFailures invalidClasses = new ClassLoadFailures(FAILURE_CACHE_SIZE);
 
-    private final Map<String,byte[]> resourceCache = new ConcurrentHashMap<>(1024);
+    // foundation.resourceCacheSize bounds the bytes on the heap, foundation.offHeapCacheSize the ones in the arena
+    private final ClassBytesCache resourceCache = new ClassBytesCache(RESOURCE_CACHE_SIZE << 20, KEEP_CLASS_BYTES,
+            OFF_HEAP_CACHE ? new ClassBytesArena(OFF_HEAP_CACHE_SIZE << 20) : null);
     private final Set<String> negativeResourceCache = ConcurrentHashMap.newKeySet();
+    private final Map<String, JarMetadata> jarMetadata = new ConcurrentHashMap<>();
+    private final LoadMetrics metrics = METRICS ? new LoadMetrics(Integer.parseInt(System.getProperty("foundation.metricsSampleRate", "0")),
+            Integer.parseInt(System.getProperty("foundation.metricsSlowest", "20"))) : null;
+
+    private final SpeculativePipeline speculation = SPECULATE ? new SpeculativePipeline(Integer.parseInt(System.getProperty("foundation.speculationLimit", "4096"))) : null;
 
-    private final ThreadLocal<byte[]> loadBuffer = new ThreadLocal<>();
+    private final ClassHierarchy classHierarchy = new ClassHierarchy(this::getLoadedClass, this::peekClassBytes,
+            internalName -> transformName(internalName.replace('/', '.')).replace('.', '/'));
+
+    private final Map<String, InFlight> inFlight = new ConcurrentHashMap<>();
+    private final Map<Thread, InFlight> waiting = new ConcurrentHashMap<>();
+
+    private final Queue<byte[]> loadBuffers = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pooledBuffers = new AtomicInteger();
 
     private static final String[] RESERVED_NAMES = {"CON", "PRN", "AUX", "NUL", "COM1", "COM2", "COM3", "COM4", "COM5", "COM6", "COM7", "COM8", "COM9", "LPT1", "LPT2", "LPT3", "LPT4", "LPT5", "LPT6", "LPT7", "LPT8", "LPT9"};
     private static final boolean DUMP = Boolean.parseBoolean(System.getProperty("foundation.dump", "false"));
     private static final boolean VERBOSE = Boolean.parseBoolean(System.getProperty("foundation.verbose", "false"));
     private static final String TARGET = System.getProperty("foundation.target", "");
+    private static final boolean CLASS_CACHE = Boolean.parseBoolean(System.getProperty("foundation.classCache", "false"));
+    private static final boolean PREFETCH = Boolean.parseBoolean(System.getProperty("foundation.prefetch", "false"));
+    private static final long RESOURCE_CACHE_SIZE = Long.parseLong(System.getProperty("foundation.resourceCacheSize", "64"));
+    private static final int FAILURE_CACHE_SIZE = Integer.parseInt(System.getProperty("foundation.failureCacheSize", "16384"));
+    private static final boolean KEEP_CLASS_BYTES = Boolean.parseBoolean(System.getProperty("foundation.keepClassBytes", "false"));
+    private static final boolean METRICS = Boolean.parseBoolean(System.getProperty("foundation.metrics", "false"));
+    private static final boolean OFF_HEAP_CACHE = Boolean.parseBoolean(System.getProperty("foundation.offHeapCache", "false"));
+    private static final long OFF_HEAP_CACHE_SIZE = Long.parseLong(System.getProperty("foundation.offHeapCacheSize", "128"));
+    private static final boolean SPECULATE = Boolean.parseBoolean(System.getProperty("foundation.speculate", "false"));
     private static File dumpSubDir;
+    private volatile TransformedClassCache classCache;
+    private volatile ClassLoadProfile loadProfile;
     static TransformerHolder transformerHolder = new TransformerHolder();
     private Map<Package, Manifest> packageManifests = null;
     private static Manifest EMPTY = new Manifest();
@@ -98,6 +137,7 @@ public class ActualClassLoader extends URLClassLoader {
             parent = loader;
         }
         this.sources = new ArrayList<>(Arrays.asList(sources));
+        this.classPathIndex = new ClassPathIndex(sources);
         addClassLoaderExclusion0("java.");
         addClassLoaderExclusion0("javax.");
         addClassLoaderExclusion0("org.w3c.dom.");
@@ -171,25 +211,129 @@ public class ActualClassLoader extends URLClassLoader {
         transformerHolder.registerTransformerFunction.accept(transformerClassName);
     }
 
+    /**
+     * Register many transformers at once, see {@link top.outlands.foundation.TransformerDelegate#registerTransformers(Collection)}
+     * @param transformerClassNames class names
+     * @return the failures, by class name
+     */
+    public Map<String, Throwable> registerTransformers(Collection<String> transformerClassNames) {
+        LOGGER.debug("Registering {} transformers", transformerClassNames.size());
+        return transformerHolder.registerTransformersFunction.apply(transformerClassNames);
+    }
+
     @Override
     public Class<?> findClass(final String name) throws ClassNotFoundException {
-        if (invalidClasses.contains(name)) {
-            throw new ClassNotFoundException("Found " + name + " in invalid classes.");
+        ClassLoadFailures.Failure failure = invalidClasses.get(name);
+        if (failure != null) {
+            throw new ClassNotFoundException("Found " + name + " in invalid classes: " + failure);
         }
+        final LoadMetrics.Trace trace = METRICS ? metrics.begin(name) : null;
+        long start = METRICS ? System.nanoTime() : 0;
         TrieNode<Boolean> node = classLoaderExceptions.getFirstKeyValueNode(name);
+        if (METRICS) {
+            start = metrics.record(trace, LoadMetrics.Phase.EXCLUSION_LOOKUP, start);
+        }
         if (node != null && node.getValue()) {
-            return parent.loadClass(name);
+            try {
+                return parent.loadClass(name);
+            } finally {
+                if (METRICS) {
+                    metrics.end(trace);
+                }
+            }
         }
 
-        if (cachedClasses.containsKey(name)) {
-            return cachedClasses.get(name);
+        Class<?> cached = cachedClasses.get(name);
+        if (cached != null) {
+            if (METRICS) {
+                metrics.end(trace);
+            }
+            return cached;
         }
 
-        byte[] transformedClass;
+        final String transformedName;
+        final String untransformedName;
+        try {
+            transformedName = transformName(name);
+            untransformedName = untransformName(name);
+        } catch (Throwable e) {
+            invalidClasses.add(name, ClassLoadFailures.Reason.TRANSFORMER_THREW, e);
+            throw new ClassNotFoundException(name, e);
+        }
+        if (METRICS) {
+            metrics.record(trace, LoadMetrics.Phase.NAME_REMAP, start);
+        }
+        // One in-flight load per transformed name, so a racing thread waits for the winner instead of transforming twice.
+        // No lock is held while the transformers run, only while defining
+        final InFlight load = new InFlight(Thread.currentThread());
+        final InFlight winner = inFlight.putIfAbsent(transformedName, load);
+        try {
+            if (winner != null && startWaiting(winner)) {
+                try {
+                    return winner.join();
+                } catch (CompletionException e) {
+                    throw new ClassNotFoundException(name, e.getCause());
+                } finally {
+                    waiting.remove(Thread.currentThread());
+                }
+            }
+            try {
+                final Class<?> clazz = transformAndDefine(name, transformedName, untransformedName, trace);
+                load.complete(clazz);
+                return clazz;
+            } catch (ClassNotFoundException | RuntimeException | Error e) {
+                load.completeExceptionally(e);
+                throw e;
+            }
+        } finally {
+            if (winner == null) {
+                inFlight.remove(transformedName, load);
+            }
+            if (METRICS) {
+                metrics.end(trace);
+            }
+        }
+    }
 
+    /**
+     * Register the current thread as waiting for a load, unless that load waits, directly or through other loads, for
+     * one the current thread runs. Waiting would never end then, so the current thread runs the chain itself instead,
+     * and whichever thread defines the class first wins.
+     * @param load the load of another thread, or an outer load of the current one
+     * @return if the current thread may wait for it
+     */
+    private boolean startWaiting(final InFlight load) {
+        final Thread current = Thread.currentThread();
+        synchronized (waiting) {
+            for (InFlight next = load; next != null; next = waiting.get(next.owner)) {
+                if (next.owner == current) {
+                    return false;
+                }
+            }
+            waiting.put(current, load);
+            return true;
+        }
+    }
+
+    private Class<?> transformAndDefine(final String name, final String transformedName, final String untransformedName, final LoadMetrics.Trace trace) throws ClassNotFoundException {
+        ClassLoadFailures.Failure failure = invalidClasses.get(name);
+        if (failure != null) {
+            throw new ClassNotFoundException("Found " + name + " in invalid classes: " + failure);
+        }
+        Class<?> cached = cachedClasses.get(transformedName);
+        if (cached == null) {
+            cached = cachedClasses.get(name);
+        }
+        if (cached != null) {
+            return cached;
+        }
+        TrieNode<Boolean> node;
+        byte[] transformedClass;
+        ClassLoadFailures.Reason phase = ClassLoadFailures.Reason.TRANSFORMER_THREW;
+        final ClassLoadEvent event = new ClassLoadEvent();
+        event.begin();
 
         try {
-            final String transformedName = transformName(name);
             if (VERBOSE) {
                 LOGGER.debug("Loading class: {}", transformedName);
                 if (!TARGET.isEmpty() && transformedName.equals(TARGET)) {
@@ -197,57 +341,84 @@ public class ActualClassLoader extends URLClassLoader {
                     Arrays.stream(Thread.currentThread().getStackTrace()).forEach(LOGGER::info);
                 }
             }
-            if (cachedClasses.containsKey(transformedName)) {
-                return cachedClasses.get(transformedName);
-            }
 
-            final String untransformedName = untransformName(name);
+            phase = ClassLoadFailures.Reason.NOT_FOUND;
+            ClassLoadProfile profile = loadProfile;
+            if (profile != null) {
+                profile.record(untransformedName);
+            }
 
             final int lastDot = untransformedName.lastIndexOf('.');
             final String packageName = lastDot == -1 ? "" : untransformedName.substring(0, lastDot);
-            final String fileName = untransformedName.replace('.', '/').concat(".class");
-            URLConnection urlConnection = findCodeSourceConnectionFor(fileName);
+            final ResolvedClassEntry entry = resolveClassEntry(untransformedName, trace);
+            if (entry != null && event.isEnabled()) {
+                event.source = String.valueOf(entry.isInJar() ? entry.jar().getUrl() : entry.url());
+            }
+            long start = METRICS ? System.nanoTime() : 0;
 
-            CodeSigner[] signers = null;
             if (lastDot > -1 && !untransformedName.startsWith("net.minecraft.")) {
-                if (urlConnection instanceof JarURLConnection jarURLConnection) {
-                    final JarFile jarFile = jarURLConnection.getJarFile();
-
-                    if (jarFile != null && jarFile.getManifest() != null) {
-                        Manifest manifest = jarFile.getManifest();
-                        final JarEntry entry = jarFile.getJarEntry(fileName);
-
+                if (entry != null && entry.isInJar()) {
+                    final JarMetadata jar = entry.jar();
+                    // Defining and seal checking is done once per package of each jar
+                    if (jar.getManifest() != null && jar.getPackage(packageName) == null) {
                         Package pkg = getDefinedPackage(packageName);
-                        getClassBytes(untransformedName);
-                        signers = entry.getCodeSigners();
                         if (pkg == null) {
-                            definePackage(packageName, manifest, jarURLConnection.getJarFileURL());
+                            try {
+                                pkg = definePackage(packageName, jar.getManifest(), jar.getUrl());
+                            } catch (IllegalArgumentException ignored) {
+                                // Another thread defined it first
+                                pkg = getDefinedPackage(packageName);
+                            }
                         } else {
-                            if (pkg.isSealed() && !pkg.isSealed(jarURLConnection.getJarFileURL())) {
-                                LOGGER.warn("The jar file {} is trying to seal already secured path {}", jarFile.getName(), packageName);
-                            } else if (isSealed(packageName, manifest)) {
-                                LOGGER.warn("The jar file {} has a security seal for path {}, but that path is defined and not secure", jarFile.getName(), packageName);
+                            if (pkg.isSealed() && !pkg.isSealed(jar.getUrl())) {
+                                LOGGER.warn("The jar file {} is trying to seal already secured path {}", jar.getUrl(), packageName);
+                            } else if (isSealed(packageName, jar.getManifest())) {
+                                LOGGER.warn("The jar file {} has a security seal for path {}, but that path is defined and not secure", jar.getUrl(), packageName);
                             }
                         }
+                        if (pkg != null) {
+                            jar.putPackage(packageName, pkg);
+                        }
                     }
                 } else {
                     Package pkg = getPackage(packageName);
                     if (pkg == null) {
-                        definePackage(packageName, null, null, null, null, null, null, null);
-                    } else if (pkg.isSealed() && urlConnection != null) {
-                        LOGGER.warn("The URL {} is defining elements for sealed path {}", urlConnection.getURL(), packageName);
+                        try {
+                            definePackage(packageName, null, null, null, null, null, null, null);
+                        } catch (IllegalArgumentException ignored) {
+                            // Another thread defined it first
+                        }
+                    } else if (pkg.isSealed() && entry != null) {
+                        LOGGER.warn("The URL {} is defining elements for sealed path {}", entry.url(), packageName);
                     }
                 }
             }
+            if (METRICS) {
+                start = metrics.record(trace, LoadMetrics.Phase.PACKAGE_DEFINITION, start);
+            }
             node = transformerExceptions.getFirstKeyValueNode(name);
             if (node != null && node.getValue()) {
                 try {
-                    transformedClass = getClassBytes(name);
+                    transformedClass = entry != null && name.equals(untransformedName) ? entry.bytes() : getClassBytes(name);
+                    event.bytesIn = transformedClass == null ? -1 : transformedClass.length;
+                    if (METRICS) {
+                        start = metrics.record(trace, LoadMetrics.Phase.READ, start);
+                    }
+                    phase = ClassLoadFailures.Reason.TRANSFORMER_THREW;
                     transformedClass = runExplicitTransformers(transformedName, transformedClass);
-                    final CodeSource codeSource = urlConnection == null ? null : new CodeSource(urlConnection.getURL(), signers);
+                    if (METRICS) {
+                        start = metrics.record(trace, LoadMetrics.Phase.EXPLICIT_TRANSFORMERS, start);
+                    }
+                    phase = ClassLoadFailures.Reason.NOT_FOUND;
                     if (transformedClass == null) throw new ClassNotFoundException(transformedName);
-                    final Class<?> clazz = super.defineClass(name, transformedClass, 0, transformedClass.length, codeSource);
+                    phase = ClassLoadFailures.Reason.DEFINE_FAILED;
+                    final Class<?> clazz = defineResolvedClass(name, transformedClass, entry);
+                    if (METRICS) {
+                        metrics.record(trace, LoadMetrics.Phase.DEFINE_CLASS, start);
+                    }
                     cachedClasses.put(name, clazz);
+                    resourceCache.release(name);
+                    commitLoadEvent(event, transformedName, transformedClass, "DEFINED");
                     if (DUMP) {
                         saveClassBytes(transformedClass, transformedName);
                     }
@@ -258,18 +429,36 @@ public class ActualClassLoader extends URLClassLoader {
                 
             }
 
-            transformedClass = runExplicitTransformers(transformedName, this.runTransformers(untransformedName, transformedName, getClassBytes(untransformedName)));
+            final byte[] basicClass = entry != null ? entry.bytes() : getClassBytes(untransformedName);
+            event.bytesIn = basicClass == null ? -1 : basicClass.length;
+            if (METRICS && entry == null) {
+                metrics.record(trace, LoadMetrics.Phase.READ, start);
+            }
+            phase = ClassLoadFailures.Reason.TRANSFORMER_THREW;
+            transformedClass = transformClass(untransformedName, transformedName, basicClass, trace);
             if (DUMP) {
                 saveClassBytes(transformedClass, transformedName);
             }
 
-            final CodeSource codeSource = urlConnection == null ? null : new CodeSource(urlConnection.getURL(), signers);
+            phase = ClassLoadFailures.Reason.NOT_FOUND;
             if (transformedClass == null) throw new ClassNotFoundException();
-            final Class<?> clazz = defineClass(transformedName, transformedClass, 0, transformedClass.length, codeSource);
+            phase = ClassLoadFailures.Reason.DEFINE_FAILED;
+            start = METRICS ? System.nanoTime() : 0;
+            final Class<?> clazz = defineResolvedClass(transformedName, transformedClass, entry);
+            if (METRICS) {
+                metrics.record(trace, LoadMetrics.Phase.DEFINE_CLASS, start);
+            }
             cachedClasses.put(transformedName, clazz);
+            resourceCache.release(untransformedName);
+            if (SPECULATE) {
+                // Defined from the class cache or before the speculation was done, its result is of no use now
+                speculation.discard(transformedName);
+            }
+            commitLoadEvent(event, transformedName, transformedClass, "DEFINED");
             return clazz;
         } catch (Throwable e) {
-            invalidClasses.add(name);
+            invalidClasses.add(name, phase, e instanceof ClassNotFoundException && e.getCause() == null ? null : e);
+            commitLoadEvent(event, transformedName, null, phase.name());
             if (VERBOSE) {
                 LOGGER.debug("Failed to load class {}, caused by {}", name, e);
                 Arrays.stream(e.getStackTrace()).forEach(LOGGER::debug);
@@ -279,6 +468,15 @@ public class ActualClassLoader extends URLClassLoader {
         }
     }
     
+    private static void commitLoadEvent(ClassLoadEvent event, String transformedName, byte[] transformedClass, String outcome) {
+        if (event.shouldCommit()) {
+            event.className = transformedName;
+            event.bytesOut = transformedClass == null ? -1 : transformedClass.length;
+            event.outcome = outcome;
+            event.commit();
+        }
+    }
+
     @Override
     public Class<?> loadClass(String name) throws ClassNotFoundException {
         return findClass(name);
@@ -332,6 +530,126 @@ public class ActualClassLoader extends URLClassLoader {
         return "true".equalsIgnoreCase(sealed);
     }
 
+    /**
+     * Look a class up once, collecting its bytes and everything about its source that findClass needs.
+     * The bytes go through {@code resourceCache} just like {@link #getClassBytes(String)}.
+     * @param name untransformed class name
+     * @return the entry, or null if no source has the class
+     */
+    protected ResolvedClassEntry resolveClassEntry(final String name) throws IOException {
+        return resolveClassEntry(name, null);
+    }
+
+    private ResolvedClassEntry resolveClassEntry(final String name, final LoadMetrics.Trace trace) throws IOException {
+        final String fileName = name.replace('.', '/').concat(".class");
+        // Minecraft classes are spread over signed and unsigned jars, so their signers are never trusted
+        final boolean trustSigners = name.lastIndexOf('.') > -1 && !name.startsWith("net.minecraft.");
+        long start = METRICS ? System.nanoTime() : 0;
+        final ClassPathIndex.Entry indexed = classPathIndex.locate(fileName);
+        if (indexed != null && indexed.isMapped()) {
+            if (METRICS) {
+                start = metrics.record(trace, LoadMetrics.Phase.RESOURCE_LOOKUP, start);
+            }
+            byte[] data = resourceCache.get(name);
+            if (data == null) {
+                data = indexed.readBytes();
+                resourceCache.put(name, data);
+            }
+            if (METRICS) {
+                metrics.record(trace, LoadMetrics.Phase.READ, start);
+            }
+            final URL url = indexed.source().resolve(fileName);
+            return new ResolvedClassEntry(data, url, indexed.source().getMetadata(), null, url == null ? null : new CodeSource(url, (CodeSigner[]) null));
+        }
+
+        final URL resource = findResource(fileName);
+        if (resource == null) {
+            if (METRICS) {
+                metrics.record(trace, LoadMetrics.Phase.RESOURCE_LOOKUP, start);
+            }
+            return null;
+        }
+        final URLConnection connection = resource.openConnection();
+        if (connection instanceof JarURLConnection jarURLConnection) {
+            final JarFile jarFile = jarURLConnection.getJarFile();
+            final JarEntry jarEntry = jarURLConnection.getJarEntry();
+            if (METRICS) {
+                start = metrics.record(trace, LoadMetrics.Phase.RESOURCE_LOOKUP, start);
+            }
+            final JarMetadata jar = getJarMetadata(jarURLConnection);
+            // Signers are only known once the entry has been read through the JarFile, which may have been done
+            // already if the bytes were prefetched; an unsigned jar has none anyway
+            byte[] data = resourceCache.get(name);
+            CodeSigner[] signers = data != null && jar.isSigned() ? jarEntry.getCodeSigners() : null;
+            if (data == null || jar.isSigned() && signers == null) {
+                try (InputStream stream = jarFile.getInputStream(jarEntry)) {
+                    data = readFully(stream, jarEntry.getSize());
+                }
+                resourceCache.put(name, data);
+                signers = jarEntry.getCodeSigners();
+            }
+            if (METRICS) {
+                metrics.record(trace, LoadMetrics.Phase.READ, start);
+            }
+            return new ResolvedClassEntry(data, resource, jar, signers, new CodeSource(resource, trustSigners && jar.getManifest() != null ? signers : null));
+        }
+        if (METRICS) {
+            start = metrics.record(trace, LoadMetrics.Phase.RESOURCE_LOOKUP, start);
+        }
+        byte[] data = resourceCache.get(name);
+        if (data == null) {
+            try (InputStream stream = connection.getInputStream()) {
+                data = readFully(stream, connection.getContentLengthLong());
+            }
+            resourceCache.put(name, data);
+        }
+        if (METRICS) {
+            metrics.record(trace, LoadMetrics.Phase.READ, start);
+        }
+        return new ResolvedClassEntry(data, resource, null, null, new CodeSource(resource, (CodeSigner[]) null));
+    }
+
+    private JarMetadata getJarMetadata(final JarURLConnection connection) throws IOException {
+        final JarFile jarFile = connection.getJarFile();
+        JarMetadata jar = jarMetadata.get(jarFile.getName());
+        if (jar == null) {
+            jar = new JarMetadata(connection.getJarFileURL(), jarFile.getManifest(), isSigned(jarFile));
+            final JarMetadata raced = jarMetadata.putIfAbsent(jarFile.getName(), jar);
+            if (raced != null) {
+                jar = raced;
+            }
+        }
+        return jar;
+    }
+
+    private static boolean isSigned(final JarFile jarFile) {
+        return jarFile.stream().map(ZipEntry::getName).anyMatch(entry -> entry.startsWith("META-INF/")
+                && (entry.endsWith(".SF") || entry.endsWith(".RSA") || entry.endsWith(".DSA") || entry.endsWith(".EC")));
+    }
+
+    /**
+     * Define a class with the code source of its entry. Classes from jars share the permissions of the jar, which
+     * skips the per-class permission lookup and domain cache of {@link SecureClassLoader}.
+     */
+    private Class<?> defineResolvedClass(final String name, final byte[] data, final ResolvedClassEntry entry) {
+        synchronized (getClassLoadingLock(name)) {
+            // A thread that didn't wait for the in-flight load, to break a cycle, may have defined it first
+            final Class<?> defined = findLoadedClass(name);
+            if (defined != null) {
+                return defined;
+            }
+            if (entry == null || entry.codeSource() == null) {
+                return defineClass(name, data, 0, data.length, (CodeSource) null);
+            }
+            if (!entry.isInJar()) {
+                return defineClass(name, data, 0, data.length, entry.codeSource());
+            }
+            final CodeSource codeSource = entry.codeSource();
+            final PermissionCollection permissions = entry.jar().getPermissions(() -> getPermissions(codeSource));
+            return defineClass(name, data, 0, data.length, new ProtectionDomain(codeSource, permissions, this, null));
+        }
+    }
+
     protected URLConnection findCodeSourceConnectionFor(final String name) {
         final URL resource = findResource(name);
         if (resource != null) {
@@ -345,6 +663,170 @@ public class ActualClassLoader extends URLClassLoader {
         return null;
     }
 
+    /**
+     * Run both transformer chains, going through the persistent class cache when it's enabled and no stateful
+     * transformer may touch the class
+     */
+    protected byte[] transformClass(final String name, final String transformedName, byte[] basicClass) {
+        return transformClass(name, transformedName, basicClass, null);
+    }
+
+    private byte[] transformClass(final String name, final String transformedName, byte[] basicClass, final LoadMetrics.Trace trace) {
+        TransformedClassCache cache = getClassCache();
+        if (cache == null || basicClass == null || !transformerHolder.cacheableFunction.test(transformedName)) {
+            return runTransformerChains(name, transformedName, basicClass, trace);
+        }
+        final long inputHash = TransformedClassCache.hash(basicClass);
+        // The class path is part of it too, transformers read other classes and resources from it
+        final long fingerprint = transformerHolder.transformerFingerprintFunction.applyAsLong(transformedName) * 0x9E3779B97F4A7C15L
+                + classPathIndex.getFingerprint();
+        byte[] transformedClass = cache.get(transformedName, inputHash, fingerprint);
+        if (transformedClass != null) {
+            return transformedClass;
+        }
+        transformedClass = runTransformerChains(name, transformedName, basicClass, trace);
+        if (transformedClass != null) {
+            cache.put(transformedName, inputHash, fingerprint, transformedClass);
+        }
+        return transformedClass;
+    }
+
+    private byte[] runTransformerChains(final String name, final String transformedName, byte[] basicClass, final LoadMetrics.Trace trace) {
+        if (!METRICS) {
+            return runExplicitTransformers(transformedName, runTransformers(name, transformedName, basicClass));
+        }
+        long start = System.nanoTime();
+        basicClass = runTransformers(name, transformedName, basicClass);
+        start = metrics.record(trace, LoadMetrics.Phase.TRANSFORMERS, start);
+        basicClass = runExplicitTransformers(transformedName, basicClass);
+        metrics.record(trace, LoadMetrics.Phase.EXPLICIT_TRANSFORMERS, start);
+        return basicClass;
+    }
+
+    /**
+     * The cache lives under the game directory, which is only known once the launch arguments are parsed
+     */
+    private TransformedClassCache getClassCache() {
+        if (!CLASS_CACHE || Launch.minecraftHome == null) {
+            return null;
+        }
+        TransformedClassCache cache = classCache;
+        if (cache == null) {
+            synchronized (this) {
+                cache = classCache;
+                if (cache == null) {
+                    classCache = cache = new TransformedClassCache(new File(Launch.minecraftHome, "CLASS_CACHE"));
+                }
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * Start recording the class load order, and prefetch the classes recorded by the last launch.
+     * Does nothing unless {@code foundation.prefetch} is set.
+     */
+    public void startClassLoadProfile() {
+        if (!PREFETCH || loadProfile != null) {
+            return;
+        }
+        ClassLoadProfile profile = new ClassLoadProfile(new File(Launch.minecraftHome, "CLASS_CACHE/classload.profile"));
+        loadProfile = profile;
+        Runtime.getRuntime().addShutdownHook(new Thread(profile::save, "Foundation Class Profile Saver"));
+        profile.startPrefetch(name -> {
+            if (SPECULATE) {
+                speculate(Collections.singletonList(name));
+                return;
+            }
+            try {
+                getClassBytes(name);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    /**
+     * Read classes and run them through the leading thread-safe transformers of the chain on idle cores, ahead of
+     * demand. The loading thread still runs the rest of the chain and defines the class.
+     * Does nothing unless {@code foundation.speculate} is set.
+     * @param names class names, as they would be requested
+     */
+    public void speculate(Collection<String> names) {
+        if (!SPECULATE) {
+            return;
+        }
+        for (String name : names) {
+            speculation.submit(name, () -> speculateClass(name));
+        }
+    }
+
+    /**
+     * @param packageName package whose classes to {@link #speculate(Collection) speculate}, like {@code "net.minecraft.client"}
+     */
+    public void speculatePackage(String packageName) {
+        if (SPECULATE) {
+            speculate(classPathIndex.getClassNames(packageName, null));
+        }
+    }
+
+    /**
+     * @param source class path entry whose classes to {@link #speculate(Collection) speculate}, like the jar of a tweaker
+     */
+    public void speculateSource(URL source) {
+        if (SPECULATE) {
+            speculate(classPathIndex.getClassNames(null, source));
+        }
+    }
+
+    private SpeculativePipeline.Speculation speculateClass(String name) {
+        if (cachedClasses.containsKey(name) || invalidClasses.get(name) != null) {
+            return null;
+        }
+        TrieNode<Boolean> node = classLoaderExceptions.getFirstKeyValueNode(name);
+        if (node != null && node.getValue()) {
+            return null;
+        }
+        node = transformerExceptions.getFirstKeyValueNode(name);
+        if (node != null && node.getValue()) {
+            return null;
+        }
+        final String transformedName = transformName(name);
+        if (cachedClasses.containsKey(transformedName)) {
+            return null;
+        }
+        final String untransformedName = untransformName(transformedName);
+        final byte[] basicClass;
+        try {
+            basicClass = getClassBytes(untransformedName);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (basicClass == null) {
+            return null;
+        }
+        return transformerHolder.speculateFunction.apply(untransformedName, transformedName, basicClass);
+    }
+
+    /**
+     * @param transformedName transformed class name
+     * @param chain the transformer chain about to run
+     * @param basicClass the class bytes about to be transformed
+     * @return the speculative result for the class, if it was computed from the same chain and bytes
+     */
+    public SpeculativePipeline.Speculation takeSpeculation(String transformedName, Object chain, byte[] basicClass) {
+        return SPECULATE ? speculation.take(transformedName, chain, basicClass) : null;
+    }
+
+    /**
+     * Drop every speculative result, the transformer chain changed
+     */
+    public void discardSpeculations() {
+        if (SPECULATE) {
+            speculation.discardAll();
+        }
+    }
+
     protected byte[] runTransformers(final String name, final String transformedName, byte[] basicClass) {
         basicClass = transformerHolder.runTransformersFunction.apply(name, transformedName, basicClass);
         return basicClass;
@@ -359,6 +841,13 @@ public class ActualClassLoader extends URLClassLoader {
         return transformers;
     }
 
+    /**
+     * @return a number bumped whenever the transformer chain changes, for caches of transformation results
+     */
+    public long getTransformerVersion() {
+        return transformerHolder.transformerVersionFunction.getAsLong();
+    }
+
     @Override
     public void addURL(final URL url) {
         if (url != null) {
@@ -369,48 +858,114 @@ public class ActualClassLoader extends URLClassLoader {
             }
             super.addURL(url);
             sources.add(url);
+            classPathIndex.add(url);
             addURL.accept(url);
         }
     }
 
+    /**
+     * Resolved through the class path index rather than walking every source
+     */
+    @Override
+    public URL findResource(final String name) {
+        return classPathIndex.findResource(name, super::findResource);
+    }
+
+    /**
+     * Also drops the jar mappings of the class path index
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            super.close();
+        } finally {
+            classPathIndex.close();
+        }
+    }
+
     public List<URL> getSources() {
         return sources;
     }
 
-    protected byte[] readFully(InputStream stream) {
+    /**
+     * Read a stream of known size into an array of that size, with no other allocation
+     * @param stream the stream
+     * @param size the expected size, negative if unknown
+     * @return the content, or an empty array if reading failed
+     */
+    protected byte[] readFully(InputStream stream, long size) {
+        if (size < 0 || size > Integer.MAX_VALUE - 8) {
+            return readFully(stream);
+        }
         try {
-            byte[] buffer = getOrCreateBuffer();
+            final byte[] result = new byte[(int) size];
+            final int read = stream.readNBytes(result, 0, result.length);
+            if (read < result.length) {
+                return Arrays.copyOf(result, read);
+            }
+            final int next = stream.read();
+            if (next == -1) {
+                return result;
+            }
+            // The size was wrong, read on as if it was unknown
+            final byte[] rest = readFully(stream);
+            final byte[] joined = Arrays.copyOf(result, result.length + 1 + rest.length);
+            joined[result.length] = (byte) next;
+            System.arraycopy(rest, 0, joined, result.length + 1, rest.length);
+            return joined;
+        } catch (Throwable t) {
+            LOGGER.warn("Problem loading class", t);
+            return new byte[0];
+        }
+    }
 
+    protected byte[] readFully(InputStream stream) {
+        byte[] buffer = getOrCreateBuffer();
+        try {
             int read;
             int totalLength = 0;
             while ((read = stream.read(buffer, totalLength, buffer.length - totalLength)) != -1) {
                 totalLength += read;
 
                 // Extend our buffer
-                if (totalLength >= buffer.length - 1) {
-                    byte[] newBuffer = new byte[buffer.length + BUFFER_SIZE];
-                    System.arraycopy(buffer, 0, newBuffer, 0, buffer.length);
-                    buffer = newBuffer;
+                if (totalLength == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, buffer.length << 1);
                 }
             }
 
-            final byte[] result = new byte[totalLength];
-            System.arraycopy(buffer, 0, result, 0, totalLength);
-            return result;
+            return Arrays.copyOf(buffer, totalLength);
         } catch (Throwable t) {
             LOGGER.warn("Problem loading class", t);
             return new byte[0];
+        } finally {
+            returnBuffer(buffer);
         }
     }
 
+    /**
+     * Buffers come from a small pool shared by all threads, rather than one per thread
+     * @return a buffer of at least {@link #BUFFER_SIZE} bytes, to be handed back with {@link #returnBuffer(byte[])}
+     */
     protected byte[] getOrCreateBuffer() {
-        byte[] buffer = loadBuffer.get();
+        final byte[] buffer = loadBuffers.poll();
         if (buffer == null) {
-            loadBuffer.set(new byte[BUFFER_SIZE]);
-            buffer = loadBuffer.get();
+            return new byte[BUFFER_SIZE];
         }
+        pooledBuffers.decrementAndGet();
         return buffer;
     }
+
+    /**
+     * @param buffer a buffer from {@link #getOrCreateBuffer()}, which may have grown since
+     */
+    protected void returnBuffer(byte[] buffer) {
+        if (buffer.length <= MAX_POOLED_BUFFER_SIZE && pooledBuffers.incrementAndGet() <= MAX_POOLED_BUFFERS) {
+            loadBuffers.offer(buffer);
+        } else if (buffer.length <= MAX_POOLED_BUFFER_SIZE) {
+            pooledBuffers.decrementAndGet();
+        }
+    }
+
     private void addClassLoaderExclusion0(String toExclude) {
         LOGGER.debug("Adding classloader exclusion {}", toExclude);
         classLoaderExceptions.put(toExclude, true);
@@ -436,8 +991,10 @@ public class ActualClassLoader extends URLClassLoader {
     public byte[] getClassBytes(String name) throws IOException {
         if (negativeResourceCache.contains(name)) {
             return null;
-        } else if (resourceCache.containsKey(name)) {
-            return resourceCache.get(name);
+        }
+        final byte[] cached = resourceCache.get(name);
+        if (cached != null) {
+            return cached;
         }
         if (name.indexOf('.') == -1) {
             for (final String reservedName : RESERVED_NAMES) {
@@ -454,15 +1011,26 @@ public class ActualClassLoader extends URLClassLoader {
         InputStream classStream = null;
         try {
             final String resourcePath = name.replace('.', '/').concat(".class");
+            final ClassPathIndex.Entry entry = classPathIndex.locate(resourcePath);
+            if (entry != null && entry.isMapped()) {
+                final byte[] data = entry.readBytes();
+                resourceCache.put(name, data);
+                return data;
+            }
+            if (entry == null && !classPathIndex.mightContain(resourcePath)) {
+                // A definite miss, which doesn't need to be remembered
+                return null;
+            }
             final URL classResource = findResource(resourcePath);
 
             if (classResource == null) {
                 negativeResourceCache.add(name);
                 return null;
             }
-            classStream = classResource.openStream();
+            final URLConnection connection = classResource.openConnection();
+            classStream = connection.getInputStream();
 
-            final byte[] data = readFully(classStream);
+            final byte[] data = readFully(classStream, connection.getContentLengthLong());
             resourceCache.put(name, data);
             return data;
         } finally {
@@ -471,8 +1039,9 @@ public class ActualClassLoader extends URLClassLoader {
     }
 
     public byte[] testGetClassBytes(String name) throws IOException {
-        if (resourceCache.containsKey(name)) {
-            return resourceCache.get(name);
+        final byte[] cached = resourceCache.get(name);
+        if (cached != null) {
+            return cached;
         }
         if (name.indexOf('.') == -1) {
             for (final String reservedName : RESERVED_NAMES) {
@@ -489,29 +1058,124 @@ public class ActualClassLoader extends URLClassLoader {
         InputStream classStream = null;
         try {
             final String resourcePath = name.replace('.', '/').concat(".class");
+            final ClassPathIndex.Entry entry = classPathIndex.locate(resourcePath);
+            if (entry != null && entry.isMapped()) {
+                return entry.readBytes();
+            }
+            if (entry == null && !classPathIndex.mightContain(resourcePath)) {
+                return null;
+            }
             final URL classResource = findResource(resourcePath);
 
             if (classResource == null) {
                 return null;
             }
-            classStream = classResource.openStream();
+            final URLConnection connection = classResource.openConnection();
+            classStream = connection.getInputStream();
 
-            return readFully(classStream);
+            return readFully(classStream, connection.getContentLengthLong());
         } finally {
             closeSilently(classStream);
         }
     }
 
+    /**
+     * @param internalName internal name, like {@code java/lang/Object}
+     * @return the class, if this loader already defined it; never loads it. Classes of the parent, like JDK classes, are
+     *         read from their class files instead
+     */
+    private Class<?> getLoadedClass(String internalName) {
+        final String name = internalName.replace('/', '.');
+        Class<?> loaded = cachedClasses.get(name);
+        return loaded != null ? loaded : findLoadedClass(name);
+    }
+
+    /**
+     * Read a class file without loading anything, falling back to the parent's resources. The bytes aren't cached,
+     * except for names reserved on Windows, which are read through {@link #getClassBytes(String)}
+     * @param internalName transformed internal name, like {@code java/lang/Object}
+     * @return the untransformed bytes, or null
+     */
+    public byte[] peekClassBytes(String internalName) {
+        try {
+            final byte[] bytes = testGetClassBytes(untransformName(internalName.replace('/', '.')));
+            if (bytes != null) {
+                return bytes;
+            }
+            try (InputStream stream = parent.getResourceAsStream(internalName.concat(".class"))) {
+                return stream == null ? null : readFully(stream);
+            }
+        } catch (IOException e) {
+            LOGGER.debug("Can't read {}", internalName, e);
+            return null;
+        }
+    }
+
+    /**
+     * @return the resolver for {@code ClassWriter.getCommonSuperClass}, which reads class headers instead of loading classes
+     */
+    public ClassHierarchy getClassHierarchy() {
+        return classHierarchy;
+    }
+
     public void printDebugMessage() {
         transformerHolder.debugPrinter.run();
+        LOGGER.debug("Class bytes cache: {}", resourceCache);
+        if (SPECULATE) {
+            LOGGER.debug("Speculative transformation: {}", speculation);
+        }
+        if (METRICS) {
+            metrics.print(LOGGER::debug);
+        }
+    }
+
+    /**
+     * @return per-phase findClass timings, null unless {@code foundation.metrics} is set
+     */
+    public LoadMetrics getLoadMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Keep the untransformed bytes of a class cached after it's defined, for consumers that keep reading them.
+     * By default they are dropped once the class is defined, see {@code foundation.keepClassBytes}.
+     * @param name untransformed class name
+     */
+    public void pinClassBytes(String name) {
+        resourceCache.pin(name);
+    }
+
+    /**
+     * @param name untransformed class name
+     */
+    public void unpinClassBytes(String name) {
+        resourceCache.unpin(name);
+    }
+
+    /**
+     * @return the untransformed class bytes cache, for its hit, miss and eviction counters
+     */
+    public ClassBytesCache getResourceCache() {
+        return resourceCache;
     }
 
     public Map<String, Class<?>> getCachedClasses() {
         return cachedClasses;
     }
 
+    /**
+     * @return read-only view of the names that failed to load, see {@link #getClassLoadFailure(String)} for why
+     */
     public Set<String> getInvalidClasses() {
-        return invalidClasses;
+        return invalidClasses.names();
+    }
+
+    /**
+     * @param name class name
+     * @return why the class failed to load, or null if it didn't
+     */
+    public ClassLoadFailures.Failure getClassLoadFailure(String name) {
+        return invalidClasses.get(name);
     }
 
     /**
@@ -524,18 +1188,22 @@ public class ActualClassLoader extends URLClassLoader {
         if (DUMP) {
             saveClassBytes(buffer, name);
         }
-        Class<?> clazz = defineClass(name, buffer, 0, buffer.length);
-        cachedClasses.put(name, clazz);
-        return clazz;
+        synchronized (getClassLoadingLock(name)) {
+            Class<?> clazz = defineClass(name, buffer, 0, buffer.length);
+            cachedClasses.put(name, clazz);
+            return clazz;
+        }
     }
 
     public Class<?> defineClass(String name, byte[] buffer, CodeSource codeSource) {
         if (DUMP) {
             saveClassBytes(buffer, name);
         }
-        Class<?> clazz = defineClass(name, buffer, 0, buffer.length, codeSource);
-        cachedClasses.put(name, clazz);
-        return clazz;
+        synchronized (getClassLoadingLock(name)) {
+            Class<?> clazz = defineClass(name, buffer, 0, buffer.length, codeSource);
+            cachedClasses.put(name, clazz);
+            return clazz;
+        }
     }
 
     /**
@@ -548,18 +1216,49 @@ public class ActualClassLoader extends URLClassLoader {
     }
 
     /**
-     * Check is a class exists without actually loading/defining it
+     * Check is a class exists without actually loading/defining it. Answered from the class path index and entry
+     * metadata, the class file is never read.
      * @param name class name
      * @return if the class exists
      */
     public boolean isClassExist(String name) {
         try {
-            return testGetClassBytes(name) != null;
+            if (resourceCache.contains(name)) {
+                return true;
+            }
+            if (name.indexOf('.') == -1) {
+                for (final String reservedName : RESERVED_NAMES) {
+                    if (name.toUpperCase(Locale.ENGLISH).startsWith(reservedName) && isClassExist("_" + name)) {
+                        return true;
+                    }
+                }
+            }
+            if (negativeResourceCache.contains(name)) {
+                return false;
+            }
+            final String resourcePath = name.replace('.', '/').concat(".class");
+            if (classPathIndex.locate(resourcePath) != null) {
+                return true;
+            }
+            return classPathIndex.mightContain(resourcePath) && findResource(resourcePath) != null;
         } catch (Throwable e) {
             return false;
         }
     }
 
+    /**
+     * Batch variant of {@link #isClassExist(String)}
+     * @param names class names
+     * @return each name mapped to if the class exists, in iteration order of the names
+     */
+    public Map<String, Boolean> isClassExist(Collection<String> names) {
+        final Map<String, Boolean> result = new LinkedHashMap<>(names.size() * 2);
+        for (String name : names) {
+            result.put(name, isClassExist(name));
+        }
+        return result;
+    }
+
     public Package definePackage(String name) {
         return definePackage(name, null, null);
     }
@@ -580,4 +1279,15 @@ public class ActualClassLoader extends URLClassLoader {
     public List<String> getTransformerExclusions() {
         return transformerExceptions.getRoot().getKeyValueNodes().stream().map(TrieNode::getKey).toList();
     }
+
+    /**
+     * A class being transformed and defined by its owner thread
+     */
+    private static final class InFlight extends CompletableFuture<Class<?>> {
+        private final Thread owner;
+
+        private InFlight(Thread owner) {
+            this.owner = owner;
+        }
+    }
 }
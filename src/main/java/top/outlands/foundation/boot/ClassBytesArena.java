@@ -0,0 +1,222 @@
+package top.outlands.foundation.boot;
+
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Off-heap storage for class bytes, so tens of thousands of them don't sit in the heap during startup.
+ * <p>
+ * Bytes are bump-allocated in direct buffer slabs. A slab is reused once every slice in it has been freed, and no
+ * more slabs are allocated past the ceiling; {@link #allocate(byte[])} returns null then, and the caller keeps the
+ * bytes on the heap. Bytes are copied back to the heap when someone needs the array.
+ */
+public class ClassBytesArena {
+    private static final int SLAB_SIZE = 4 << 20;
+    private final long maxSize;
+    private final List<Slab> slabs = new ArrayList<>();
+    private final Deque<Slab> freeSlabs = new ArrayDeque<>();
+    private Slab current;
+    private long reserved;
+    private long used;
+    private long live;
+    private final LongAdder allocations = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+    private final LongAdder copies = new LongAdder();
+
+    /**
+     * @param maxSize ceiling of off-heap memory reserved for slabs
+     */
+    public ClassBytesArena(long maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Copy bytes into the arena
+     * @param bytes the bytes
+     * @return the slice holding them, or null if the arena is full or the bytes don't fit in a slab
+     */
+    public synchronized Slice allocate(byte[] bytes) {
+        if (bytes.length > SLAB_SIZE) {
+            rejections.increment();
+            return null;
+        }
+        if (current == null || SLAB_SIZE - current.top < bytes.length) {
+            if (current != null && current.live == 0) {
+                current.top = 0;
+            } else {
+                Slab next = freeSlabs.poll();
+                if (next == null) {
+                    if (reserved + SLAB_SIZE > maxSize) {
+                        rejections.increment();
+                        return null;
+                    }
+                    next = new Slab(ByteBuffer.allocateDirect(SLAB_SIZE));
+                    slabs.add(next);
+                    reserved += SLAB_SIZE;
+                }
+                current = next;
+            }
+        }
+        Slice slice = new Slice(this, current, current.top, bytes.length);
+        current.buffer.put(current.top, bytes);
+        current.top += bytes.length;
+        current.live += bytes.length;
+        used += bytes.length;
+        live++;
+        allocations.increment();
+        return slice;
+    }
+
+    private synchronized void free(Slice slice) {
+        Slab slab = slice.slab;
+        slab.live -= slice.length;
+        used -= slice.length;
+        live--;
+        if (slab.live == 0 && slab != current) {
+            slab.top = 0;
+            freeSlabs.push(slab);
+        }
+    }
+
+    /**
+     * @return the slab holding the fewest bytes, the cheapest one to empty; null if there are no slabs
+     */
+    synchronized Slab getEmptiestSlab() {
+        Slab emptiest = null;
+        for (Slab slab : slabs) {
+            if (emptiest == null || slab.live < emptiest.live) {
+                emptiest = slab;
+            }
+        }
+        return emptiest;
+    }
+
+    /**
+     * @param size number of bytes
+     * @return if the bytes could be allocated once enough slices are freed
+     */
+    public boolean canHold(int size) {
+        return size <= SLAB_SIZE && SLAB_SIZE <= maxSize;
+    }
+
+    /**
+     * @return ceiling of off-heap memory reserved for slabs
+     */
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * @return off-heap memory reserved for slabs
+     */
+    public synchronized long getReserved() {
+        return reserved;
+    }
+
+    /**
+     * @return bytes held by live slices
+     */
+    public synchronized long getUsed() {
+        return used;
+    }
+
+    public synchronized long getLiveCount() {
+        return live;
+    }
+
+    public long getAllocationCount() {
+        return allocations.sum();
+    }
+
+    /**
+     * @return number of allocations refused because of the ceiling or the size
+     */
+    public long getRejectionCount() {
+        return rejections.sum();
+    }
+
+    /**
+     * @return number of copies back to the heap
+     */
+    public long getCopyCount() {
+        return copies.sum();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("off-heap %d/%d bytes reserved, %d bytes in %d slices, %d allocations, %d rejected, %d copied back",
+                reserved, maxSize, used, live, getAllocationCount(), getRejectionCount(), getCopyCount());
+    }
+
+    static final class Slab {
+        private final ByteBuffer buffer;
+        private int top;
+        private int live;
+
+        private Slab(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+    }
+
+    /**
+     * Bytes stored in the arena
+     */
+    public static final class Slice {
+        private final ClassBytesArena arena;
+        private final Slab slab;
+        private final int offset;
+        private final int length;
+        private volatile boolean freed;
+
+        private Slice(ClassBytesArena arena, Slab slab, int offset, int length) {
+            this.arena = arena;
+            this.slab = slab;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        public int length() {
+            return length;
+        }
+
+        boolean isIn(Slab slab) {
+            return this.slab == slab;
+        }
+
+        /**
+         * @return a heap copy of the bytes, or null if the slice was freed meanwhile
+         */
+        public byte[] read() {
+            if (freed) {
+                return null;
+            }
+            byte[] bytes = new byte[length];
+            slab.buffer.get(offset, bytes);
+            // Like StampedLock.validate: the copy is only good if the slab wasn't handed out again during it
+            VarHandle.acquireFence();
+            if (freed) {
+                return null;
+            }
+            arena.copies.increment();
+            return bytes;
+        }
+
+        /**
+         * Give the space back, at most once
+         */
+        public void free() {
+            synchronized (arena) {
+                if (freed) {
+                    return;
+                }
+                freed = true;
+            }
+            arena.free(this);
+        }
+    }
+}
@@ -0,0 +1,263 @@
+package top.outlands.foundation.boot;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Untransformed class bytes, bounded by their total size.
+ * <p>
+ * When the bound is exceeded, a clock hand sweeps the entries: an entry that was read since the hand last passed
+ * gets its use count halved and survives, one that wasn't is evicted. Frequently read bytes stay, bytes read once
+ * (prefetched, or read for a class that is now defined) go first.
+ * <p>
+ * Bytes of a class are of no use to the loader once the class is defined, so {@link #release(String)} drops them,
+ * unless the name was {@link #pin(String) pinned} by a consumer that keeps asking for them.
+ * <p>
+ * With a {@link ClassBytesArena}, the bytes are kept off-heap and every read returns a fresh heap copy. Off-heap bytes
+ * are bounded by the ceiling of the arena alone: when it's full, off-heap entries are evicted the same way to make
+ * room, and bytes that still don't fit are kept on the heap, under the heap bound.
+ */
+public class ClassBytesCache {
+    private static final int MAX_USES = 15;
+    private final Map<String, Node> entries = new ConcurrentHashMap<>(1024);
+    private final Set<String> pinned = ConcurrentHashMap.newKeySet();
+    private final long maxWeight;
+    private final boolean keepDefined;
+    private final ClassBytesArena arena;
+    private final AtomicLong weight = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder releases = new LongAdder();
+    private Iterator<Map.Entry<String, Node>> hand;
+
+    /**
+     * @param maxWeight bound of the total size of cached bytes
+     * @param keepDefined if bytes of defined classes are kept anyway, until evicted
+     */
+    public ClassBytesCache(long maxWeight, boolean keepDefined) {
+        this(maxWeight, keepDefined, null);
+    }
+
+    /**
+     * @param maxWeight bound of the total size of bytes cached on the heap
+     * @param keepDefined if bytes of defined classes are kept anyway, until evicted
+     * @param arena off-heap storage for the bytes, with its own ceiling; null to keep them on the heap
+     */
+    public ClassBytesCache(long maxWeight, boolean keepDefined, ClassBytesArena arena) {
+        this.maxWeight = maxWeight;
+        this.keepDefined = keepDefined;
+        this.arena = arena;
+    }
+
+    /**
+     * @param name class name
+     * @return the cached bytes, or null
+     */
+    public byte[] get(String name) {
+        Node node = entries.get(name);
+        byte[] bytes = node == null ? null : node.bytes();
+        if (bytes == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        if (node.uses < MAX_USES) {
+            // Racy on purpose, a lost increment doesn't matter
+            node.uses++;
+        }
+        return bytes;
+    }
+
+    /**
+     * Check for an entry, without counting a hit or a miss
+     * @param name class name
+     * @return if bytes are cached for the name
+     */
+    public boolean contains(String name) {
+        return entries.containsKey(name);
+    }
+
+    /**
+     * @param name class name
+     * @param bytes class bytes
+     */
+    public void put(String name, byte[] bytes) {
+        ClassBytesArena.Slice slice = null;
+        if (arena != null) {
+            slice = arena.allocate(bytes);
+            if (slice == null && arena.canHold(bytes.length) && evictOffHeap()) {
+                slice = arena.allocate(bytes);
+            }
+        }
+        if (slice == null && bytes.length > maxWeight) {
+            return;
+        }
+        Node node = slice == null ? new Node(bytes, null) : new Node(null, slice);
+        Node previous = entries.put(name, node);
+        weight.addAndGet(node.heapWeight() - (previous == null ? 0 : previous.free()));
+        if (weight.get() > maxWeight) {
+            evict();
+        }
+    }
+
+    /**
+     * Drop the bytes of a class that has been defined, unless its name is pinned
+     * @param name class name
+     */
+    public void release(String name) {
+        if (keepDefined || pinned.contains(name)) {
+            return;
+        }
+        Node removed = entries.remove(name);
+        if (removed != null) {
+            weight.addAndGet(-removed.free());
+            releases.increment();
+        }
+    }
+
+    /**
+     * Keep the bytes of a class after it's defined, for consumers that read the bytes of loaded classes.
+     * Pinned bytes are not evicted either.
+     * @param name class name
+     */
+    public void pin(String name) {
+        pinned.add(name);
+    }
+
+    /**
+     * @param name class name
+     */
+    public void unpin(String name) {
+        pinned.remove(name);
+    }
+
+    /**
+     * Make room in the full arena. Slabs are only reused once every slice in them is freed, so rather than sweeping,
+     * this empties the slab holding the fewest bytes.
+     * @return if a slab was emptied
+     */
+    private synchronized boolean evictOffHeap() {
+        final ClassBytesArena.Slab slab = arena.getEmptiestSlab();
+        if (slab == null) {
+            return false;
+        }
+        boolean emptied = true;
+        for (Map.Entry<String, Node> entry : entries.entrySet()) {
+            final Node node = entry.getValue();
+            if (node.slice == null || !node.slice.isIn(slab)) {
+                continue;
+            }
+            if (pinned.contains(entry.getKey())) {
+                emptied = false;
+            } else if (entries.remove(entry.getKey(), node)) {
+                node.free();
+                evictions.increment();
+            }
+        }
+        return emptied;
+    }
+
+    private synchronized void evict() {
+        // Every entry gets visited at most a few times, so pinned entries can't make this spin
+        int budget = entries.size() * 5;
+        while (weight.get() > maxWeight && budget-- > 0) {
+            if (hand == null || !hand.hasNext()) {
+                hand = entries.entrySet().iterator();
+                if (!hand.hasNext()) {
+                    return;
+                }
+            }
+            Map.Entry<String, Node> entry = hand.next();
+            Node node = entry.getValue();
+            // Off-heap bytes don't count against the heap bound
+            if (node.slice != null || pinned.contains(entry.getKey())) {
+                continue;
+            }
+            if (node.uses > 0) {
+                node.uses >>= 1;
+            } else if (entries.remove(entry.getKey(), node)) {
+                weight.addAndGet(-node.free());
+                evictions.increment();
+            }
+        }
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * @return number of entries dropped after their class was defined
+     */
+    public long getReleaseCount() {
+        return releases.sum();
+    }
+
+    /**
+     * @return total size of bytes cached on the heap; off-heap bytes are counted by the arena
+     */
+    public long getWeight() {
+        return weight.get();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return the off-heap storage, null if bytes are kept on the heap
+     */
+    public ClassBytesArena getArena() {
+        return arena;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d classes, %d/%d bytes on heap, %d hits, %d misses, %d evictions, %d released after define",
+                size(), getWeight(), maxWeight, getHitCount(), getMissCount(), getEvictionCount(), getReleaseCount())
+                + (arena == null ? "" : ", " + arena);
+    }
+
+    private static final class Node {
+        private final byte[] bytes;
+        private final ClassBytesArena.Slice slice;
+        private volatile int uses;
+
+        private Node(byte[] bytes, ClassBytesArena.Slice slice) {
+            this.bytes = bytes;
+            this.slice = slice;
+        }
+
+        private byte[] bytes() {
+            return slice == null ? bytes : slice.read();
+        }
+
+        private int heapWeight() {
+            return slice == null ? bytes.length : 0;
+        }
+
+        /**
+         * @return size of the bytes freed on the heap; off-heap bytes are given back to the arena
+         */
+        private int free() {
+            if (slice == null) {
+                return bytes.length;
+            }
+            slice.free();
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package top.outlands.foundation.boot;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.lang.reflect.Modifier;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Answers {@code ClassWriter.getCommonSuperClass} without loading classes. A type is looked up as an already loaded
+ * class if there is one, otherwise its superclass, interfaces and access flags are read from the header of its class
+ * file. Types are memoized; pairwise results are kept in a bounded LRU.
+ * <p>
+ * Types are named by their transformed names. Headers are read from the untransformed bytes, so the names read from
+ * them are passed through the rename function first, and a type is resolved once: a transformer that changes the
+ * hierarchy of a class isn't seen if the type was resolved before the class was loaded.
+ */
+public class ClassHierarchy {
+    private static final String OBJECT = "java/lang/Object";
+    private static final int MAX_PAIRS = 4096;
+    private final Function<String, Class<?>> loadedClasses;
+    private final Function<String, byte[]> classBytes;
+    private final Function<String, String> rename;
+    private final Map<String, Type> types = new ConcurrentHashMap<>(1024);
+    private final Map<String, String> pairs = Collections.synchronizedMap(new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+            return size() > MAX_PAIRS;
+        }
+    });
+
+    /**
+     * @param loadedClasses internal name to the class, if it's loaded already; must not load it
+     * @param classBytes internal name to the class file, or null
+     */
+    public ClassHierarchy(Function<String, Class<?>> loadedClasses, Function<String, byte[]> classBytes) {
+        this(loadedClasses, classBytes, Function.identity());
+    }
+
+    /**
+     * @param loadedClasses internal name to the class, if it's loaded already; must not load it
+     * @param classBytes internal name to the class file, or null
+     * @param rename internal name as found in a class file to the transformed internal name
+     */
+    public ClassHierarchy(Function<String, Class<?>> loadedClasses, Function<String, byte[]> classBytes, Function<String, String> rename) {
+        this.loadedClasses = loadedClasses;
+        this.classBytes = classBytes;
+        this.rename = rename;
+    }
+
+    /**
+     * Same contract as {@code ClassWriter.getCommonSuperClass}
+     * @param type1 internal name
+     * @param type2 internal name
+     * @return internal name of the closest common superclass, {@code java/lang/Object} if either is an interface
+     * @throws TypeNotPresentException if a type can't be found
+     */
+    public String getCommonSuperClass(String type1, String type2) {
+        if (type1.equals(type2)) {
+            return type1;
+        }
+        final String key = type1 + ' ' + type2;
+        String common = pairs.get(key);
+        if (common == null) {
+            common = computeCommonSuperClass(type1, type2);
+            pairs.put(key, common);
+        }
+        return common;
+    }
+
+    private String computeCommonSuperClass(String type1, String type2) {
+        final Type first = type(type1);
+        final Type second = type(type2);
+        if (supertypes(second).contains(type1)) {
+            return type1;
+        }
+        if (supertypes(first).contains(type2)) {
+            return type2;
+        }
+        if (first.isInterface() || second.isInterface()) {
+            return OBJECT;
+        }
+        final Set<String> supertypes = supertypes(second);
+        String current = first.superName;
+        while (current != null && !supertypes.contains(current)) {
+            current = type(current).superName;
+        }
+        return current == null ? OBJECT : current;
+    }
+
+    /**
+     * @param name internal name
+     * @return if the type is known and is an interface
+     */
+    public boolean isInterface(String name) {
+        return type(name).isInterface();
+    }
+
+    /**
+     * @param name internal name
+     * @return the type itself and every superclass and interface it has, directly or not
+     */
+    public Set<String> supertypes(String name) {
+        return supertypes(type(name));
+    }
+
+    private Set<String> supertypes(Type type) {
+        Set<String> supertypes = type.supertypes;
+        if (supertypes == null) {
+            supertypes = new HashSet<>();
+            supertypes.add(type.name);
+            if (type.superName != null) {
+                supertypes.addAll(supertypes(type.superName));
+            }
+            for (String anInterface : type.interfaces) {
+                supertypes.addAll(supertypes(anInterface));
+            }
+            type.supertypes = supertypes = Collections.unmodifiableSet(supertypes);
+        }
+        return supertypes;
+    }
+
+    private Type type(String name) {
+        // Not computeIfAbsent, resolving a type resolves its supertypes too
+        Type type = types.get(name);
+        if (type == null) {
+            type = resolve(name);
+            Type previous = types.putIfAbsent(name, type);
+            if (previous != null) {
+                type = previous;
+            }
+        }
+        return type;
+    }
+
+    private Type resolve(String name) {
+        final Class<?> loaded = loadedClasses.apply(name);
+        if (loaded != null) {
+            final Class<?>[] classes = loaded.getInterfaces();
+            final String[] interfaces = new String[classes.length];
+            for (int i = 0; i < classes.length; i++) {
+                interfaces[i] = classes[i].getName().replace('.', '/');
+            }
+            final Class<?> superclass = loaded.getSuperclass();
+            return new Type(name, loaded.getModifiers(), superclass == null ? null : superclass.getName().replace('.', '/'), interfaces);
+        }
+        final byte[] bytes = classBytes.apply(name);
+        if (bytes == null) {
+            throw new TypeNotPresentException(name, null);
+        }
+        try {
+            return readHeader(name, bytes, rename);
+        } catch (IOException | RuntimeException e) {
+            throw new TypeNotPresentException(name, e);
+        }
+    }
+
+    /**
+     * Skip the constant pool to the access flags, then resolve the class names of the header
+     */
+    private static Type readHeader(String name, byte[] bytes, Function<String, String> rename) throws IOException {
+        if (readInt(bytes, 0) != 0xCAFEBABE) {
+            throw new IOException("Not a class file");
+        }
+        final int count = readUnsignedShort(bytes, 8);
+        final int[] offsets = new int[count];
+        int offset = 10;
+        for (int i = 1; i < count; i++) {
+            offsets[i] = offset + 1;
+            switch (bytes[offset]) {
+                case 1 -> offset += 3 + readUnsignedShort(bytes, offset + 1);
+                case 3, 4, 9, 10, 11, 12, 17, 18 -> offset += 5;
+                case 5, 6 -> {
+                    offset += 9;
+                    i++;
+                }
+                case 7, 8, 16, 19, 20 -> offset += 3;
+                case 15 -> offset += 4;
+                default -> throw new IOException("Unknown constant pool tag " + bytes[offset]);
+            }
+        }
+        final int access = readUnsignedShort(bytes, offset);
+        final int superIndex = readUnsignedShort(bytes, offset + 4);
+        final String[] interfaces = new String[readUnsignedShort(bytes, offset + 6)];
+        for (int i = 0; i < interfaces.length; i++) {
+            interfaces[i] = rename.apply(readClassName(bytes, offsets, readUnsignedShort(bytes, offset + 8 + i * 2)));
+        }
+        return new Type(name, access, superIndex == 0 ? null : rename.apply(readClassName(bytes, offsets, superIndex)), interfaces);
+    }
+
+    private static String readClassName(byte[] bytes, int[] offsets, int classIndex) throws IOException {
+        final int utf8 = offsets[readUnsignedShort(bytes, offsets[classIndex])];
+        return new DataInputStream(new ByteArrayInputStream(bytes, utf8, bytes.length - utf8)).readUTF();
+    }
+
+    private static int readUnsignedShort(byte[] bytes, int offset) {
+        return ((bytes[offset] & 0xFF) << 8) | (bytes[offset + 1] & 0xFF);
+    }
+
+    private static int readInt(byte[] bytes, int offset) {
+        return (readUnsignedShort(bytes, offset) << 16) | readUnsignedShort(bytes, offset + 2);
+    }
+
+    private static final class Type {
+        private final String name;
+        private final int access;
+        private final String superName;
+        private final String[] interfaces;
+        private volatile Set<String> supertypes;
+
+        private Type(String name, int access, String superName, String[] interfaces) {
+            this.name = name;
+            this.access = access;
+            this.superName = superName;
+            this.interfaces = interfaces;
+        }
+
+        boolean isInterface() {
+            return (access & Modifier.INTERFACE) != 0;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package top.outlands.foundation.boot;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event for one class loaded by {@link ActualClassLoader}, from lookup to define.
+ * Disabled unless turned on by a recording setting, see {@code foundation.jfc}.
+ */
+@Name("top.outlands.foundation.ClassLoad")
+@Label("Class Load")
+@Description("A class found, transformed and defined by the launch class loader")
+@Category({"Foundation", "Class Loading"})
+@Enabled(false)
+@StackTrace(false)
+public class ClassLoadEvent extends Event {
+    @Label("Class Name")
+    public String className;
+
+    @Label("Source")
+    @Description("Jar or directory the class bytes came from")
+    public String source;
+
+    @Label("Bytes In")
+    @DataAmount
+    public int bytesIn;
+
+    @Label("Bytes Out")
+    @DataAmount
+    public int bytesOut;
+
+    @Label("Outcome")
+    @Description("DEFINED, or why the load failed")
+    public String outcome;
+}
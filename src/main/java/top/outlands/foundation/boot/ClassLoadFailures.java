@@ -0,0 +1,93 @@
+package top.outlands.foundation.boot;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Names that failed to load, with why, so probing them again fails right away instead of running the whole
+ * findClass pipeline. Bounded; the oldest failures are forgotten first.
+ */
+public class ClassLoadFailures {
+    private final Map<String, Failure> failures = new ConcurrentHashMap<>(1024);
+    private final Queue<String> order = new ConcurrentLinkedQueue<>();
+    private final Set<String> view = Collections.unmodifiableSet(failures.keySet());
+    private final int maxSize;
+
+    /**
+     * @param maxSize number of failures to remember
+     */
+    public ClassLoadFailures(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * @param name class name
+     * @return the failure, or null if the name didn't fail or was forgotten
+     */
+    public Failure get(String name) {
+        return failures.get(name);
+    }
+
+    /**
+     * @param name class name
+     * @param reason the phase that failed
+     * @param cause what was thrown, may be null
+     */
+    public void add(String name, Reason reason, Throwable cause) {
+        if (failures.put(name, new Failure(reason, cause == null ? null : cause.toString())) == null) {
+            order.offer(name);
+            while (failures.size() > maxSize) {
+                String oldest = order.poll();
+                if (oldest == null) {
+                    break;
+                }
+                failures.remove(oldest);
+            }
+        }
+    }
+
+    /**
+     * Forget a failure, so the name is loaded again on the next request
+     * @param name class name
+     */
+    public void remove(String name) {
+        if (failures.remove(name) != null) {
+            order.remove(name);
+        }
+    }
+
+    /**
+     * @return read-only live view of the failed names
+     */
+    public Set<String> names() {
+        return view;
+    }
+
+    public int size() {
+        return failures.size();
+    }
+
+    public enum Reason {
+        /** No source has the class, and no transformer made one up */
+        NOT_FOUND,
+        /** A transformer, or the rename transformer, threw */
+        TRANSFORMER_THREW,
+        /** The JVM refused the transformed bytes */
+        DEFINE_FAILED
+    }
+
+    /**
+     * @param reason the phase that failed
+     * @param detail short description of what was thrown, null if nothing was
+     */
+    public record Failure(Reason reason, String detail) {
+        @Override
+        public String toString() {
+            return detail == null ? reason.toString() : reason + ": " + detail;
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package top.outlands.foundation.boot;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static top.outlands.foundation.boot.Foundation.LOGGER;
+
+/**
+ * Records the order classes are requested in during a launch, and replays the previous launch's order with a few
+ * background threads that read class bytes ahead of the main thread. Turned on with {@code -Dfoundation.prefetch=true}.
+ * <p>
+ * Prefetching stays at most {@link #WINDOW} classes ahead of demand, and gives up as soon as demand overtakes it,
+ * since by then the order has diverged from the recording and the reads would only compete with the loading threads.
+ */
+public class ClassLoadProfile {
+    private static final int MAGIC = 0x46434c50;
+    private static final int MAX_RECORDED = 1 << 20;
+    private static final int WINDOW = 2048;
+    private final File file;
+    private final List<String> recorded = new ArrayList<>(1 << 14);
+    private final Set<String> recordedNames = ConcurrentHashMap.newKeySet(1 << 14);
+    private volatile List<String> replayed = Collections.emptyList();
+    private volatile Set<String> replayedNames = Collections.emptySet();
+    private final AtomicInteger prefetchCursor = new AtomicInteger();
+    private final AtomicInteger demanded = new AtomicInteger();
+    private volatile boolean prefetching;
+
+    public ClassLoadProfile(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Load the previous profile and start prefetching it
+     * @param reader reads and caches the bytes of a class
+     */
+    public void startPrefetch(Consumer<String> reader) {
+        if (!file.isFile()) {
+            LOGGER.info("No class load profile found, recording one for the next launch");
+            return;
+        }
+        try {
+            replayed = read(file);
+        } catch (IOException e) {
+            LOGGER.warn("Could not read class load profile {}", file, e);
+            return;
+        }
+        replayedNames = new HashSet<>(replayed);
+        prefetching = true;
+        final int threads = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+        LOGGER.info("Prefetching {} classes with {} threads", replayed.size(), threads);
+        for (int i = 0; i < threads; i++) {
+            Thread thread = new Thread(() -> prefetch(reader), "Foundation Class Prefetch #" + i);
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            thread.start();
+        }
+    }
+
+    private void prefetch(Consumer<String> reader) {
+        while (prefetching) {
+            final int index = prefetchCursor.getAndIncrement();
+            if (index >= replayed.size()) {
+                break;
+            }
+            if (index < demanded.get()) {
+                LOGGER.debug("Class prefetch fell behind at {}/{}, stopping", index, replayed.size());
+                break;
+            }
+            while (prefetching && index - demanded.get() > WINDOW) {
+                LockSupport.parkNanos(1_000_000L);
+            }
+            try {
+                reader.accept(replayed.get(index));
+            } catch (Throwable t) {
+                LOGGER.debug("Failed to prefetch {}", replayed.get(index), t);
+            }
+        }
+        prefetching = false;
+    }
+
+    /**
+     * Called once for every class the loader starts loading
+     * @param name untransformed class name
+     */
+    public void record(String name) {
+        if (replayedNames.contains(name)) {
+            demanded.incrementAndGet();
+        }
+        if (recordedNames.size() < MAX_RECORDED && recordedNames.add(name)) {
+            synchronized (recorded) {
+                recorded.add(name);
+            }
+        }
+    }
+
+    /**
+     * Write what has been recorded so far, replacing the previous profile
+     */
+    public void save() {
+        prefetching = false;
+        final List<String> names;
+        synchronized (recorded) {
+            names = new ArrayList<>(recorded);
+        }
+        try {
+            File parent = file.getAbsoluteFile().getParentFile();
+            if (!parent.exists()) {
+                parent.mkdirs();
+            }
+            File temp = new File(parent, file.getName() + ".tmp");
+            write(temp, names);
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            LOGGER.debug("Saved class load profile with {} classes", names.size());
+        } catch (IOException e) {
+            LOGGER.warn("Could not save class load profile {}", file, e);
+        }
+    }
+
+    /**
+     * Names are front-coded against the previous name, since consecutive loads usually share a package.
+     */
+    private static void write(File file, List<String> names) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(file))))) {
+            out.writeInt(MAGIC);
+            out.writeInt(names.size());
+            String previous = "";
+            for (String name : names) {
+                int shared = 0;
+                int max = Math.min(name.length(), Math.min(previous.length(), 0xFFFF));
+                while (shared < max && name.charAt(shared) == previous.charAt(shared)) {
+                    shared++;
+                }
+                out.writeShort(shared);
+                out.writeUTF(name.substring(shared));
+                previous = name;
+            }
+        }
+    }
+
+    private static List<String> read(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(file))))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a class load profile");
+            }
+            final int size = in.readInt();
+            final List<String> names = new ArrayList<>(Math.min(size, MAX_RECORDED));
+            String previous = "";
+            for (int i = 0; i < size; i++) {
+                int shared = in.readUnsignedShort();
+                if (shared > previous.length()) {
+                    throw new IOException("Corrupted class load profile");
+                }
+                previous = previous.substring(0, shared).concat(in.readUTF());
+                names.add(previous);
+            }
+            return names;
+        }
+    }
+}
@@ -0,0 +1,440 @@
+package top.outlands.foundation.boot;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+import java.util.jar.Attributes;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.zip.ZipEntry;
+
+import static top.outlands.foundation.boot.Foundation.LOGGER;
+
+/**
+ * Maps every entry name of the class path jars to the first jar containing it, so resource lookups are one hash probe
+ * instead of a walk over every jar in the class path. Jars are mapped with {@link MappedJar} where possible, which
+ * lets entries be read without going through a URL.
+ * <p>
+ * Directories are not indexed, they're checked on demand, but only the ones before the indexed jar, which keeps the
+ * first-wins order of the class path. Sources that are neither a local jar nor a directory can't be indexed; lookups that
+ * might be answered by one of those go through the fallback. The {@code Class-Path} of a jar's manifest is expanded right
+ * after the jar, the order the class path searches it in.
+ */
+public class ClassPathIndex {
+    private static final String VERSIONS = "META-INF/versions/";
+    private static final int RUNTIME_VERSION = Runtime.version().feature();
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>(1 << 16);
+    private final List<Source> sources = new ArrayList<>();
+    private final Set<String> opened = new HashSet<>();
+    private final List<Source> directories = new CopyOnWriteArrayList<>();
+    private volatile int firstOpaque = Integer.MAX_VALUE;
+    private volatile long fingerprint;
+
+    /**
+     * Central directories are read one after another on the calling thread; this runs while the launch class loader is
+     * constructed, possibly as the system class loader, when nothing that asks for the system class loader, like the
+     * common fork-join pool, may be touched yet.
+     * @param urls the class path
+     */
+    public ClassPathIndex(URL[] urls) {
+        for (URL url : urls) {
+            add(url);
+        }
+    }
+
+    /**
+     * Index a source appended to the class path
+     * @param url the source
+     */
+    public synchronized void add(URL url) {
+        // Like the class path, the Class-Path entries of a jar's manifest go right after the jar, depth first, and a
+        // source already on the class path isn't opened again
+        final Deque<URL> pending = new ArrayDeque<>();
+        pending.push(url);
+        while (!pending.isEmpty()) {
+            final URL next = pending.pop();
+            if (!opened.add(next.toExternalForm())) {
+                continue;
+            }
+            final Source source = new Source(sources.size(), next);
+            sources.add(source);
+            fingerprint = fingerprint * 0x9E3779B97F4A7C15L + source.stamp();
+            merge(source, source.readNames());
+            for (int i = source.classPath.size() - 1; i >= 0; i--) {
+                pending.push(source.classPath.get(i));
+            }
+        }
+    }
+
+    private void merge(Source source, String[] names) {
+        if (names == null) {
+            if (source.directory != null) {
+                directories.add(source);
+            } else if (firstOpaque == Integer.MAX_VALUE) {
+                LOGGER.debug("Can't index {}, lookups past it will walk the class path", source.url);
+                firstOpaque = source.index;
+            }
+            return;
+        }
+        Map<String, Integer> versioned = source.multiRelease ? new HashMap<>() : Collections.emptyMap();
+        if (source.multiRelease) {
+            // Multi-release jars serve the newest applicable versioned entry under the base name
+            int[] versions = new int[names.length];
+            for (int slot = 0; slot < names.length; slot++) {
+                String name = names[slot];
+                if (name.startsWith(VERSIONS)) {
+                    int slash = name.indexOf('/', VERSIONS.length());
+                    if (slash != -1) {
+                        try {
+                            int version = Integer.parseInt(name.substring(VERSIONS.length(), slash));
+                            String base = name.substring(slash + 1);
+                            Integer previous = versioned.get(base);
+                            if (version <= RUNTIME_VERSION && (previous == null || versions[previous] < version)) {
+                                versions[slot] = version;
+                                versioned.put(base, slot);
+                            }
+                        } catch (NumberFormatException ignored) {
+                        }
+                    }
+                }
+            }
+        }
+        for (int slot = 0; slot < names.length; slot++) {
+            Integer override = versioned.remove(names[slot]);
+            entries.putIfAbsent(names[slot], new Entry(source, override == null ? slot : override));
+        }
+        versioned.forEach((name, slot) -> entries.putIfAbsent(name, new Entry(source, slot)));
+    }
+
+    /**
+     * @param name resource name
+     * @param fallback full class path walk, for names the index can't answer alone
+     * @return the resource URL, or null if no source has it
+     */
+    public URL findResource(String name, Function<String, URL> fallback) {
+        Entry entry = entries.get(name);
+        if (entry == null && !name.endsWith("/")) {
+            entry = entries.get(name.concat("/"));
+        }
+        final int limit = Math.min(entry == null ? Integer.MAX_VALUE : entry.source.index, firstOpaque);
+        for (Source directory : directories) {
+            if (directory.index >= limit) {
+                break;
+            }
+            File file = new File(directory.directory, name);
+            if (file.exists()) {
+                return directory.resolve(name);
+            }
+        }
+        if (entry != null && entry.source.index < firstOpaque) {
+            return entry.source.resolve(name);
+        }
+        return firstOpaque == Integer.MAX_VALUE ? null : fallback.apply(name);
+    }
+
+    /**
+     * @param name resource name
+     * @return the indexed entry, ignoring directories and sources that couldn't be indexed
+     */
+    public Entry getEntry(String name) {
+        return entries.get(name);
+    }
+
+    /**
+     * Like {@link #findResource(String, Function)}, but only answers when the name resolves to an indexed jar entry
+     * @param name resource name
+     * @return the entry, or null if it's missing or served by a directory or an unindexed source
+     */
+    public Entry locate(String name) {
+        Entry entry = entries.get(name);
+        if (entry == null || entry.source.index >= firstOpaque) {
+            return null;
+        }
+        for (Source directory : directories) {
+            if (directory.index >= entry.source.index) {
+                break;
+            }
+            if (new File(directory.directory, name).exists()) {
+                return null;
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * The index holds every name of every jar before the first source that couldn't be indexed, so a name missing from
+     * it and from the directories is a definite miss, answered without touching any jar.
+     * @param name resource name
+     * @return false if no source of the class path has the name
+     */
+    public boolean mightContain(String name) {
+        if (firstOpaque != Integer.MAX_VALUE || entries.containsKey(name)) {
+            return true;
+        }
+        for (Source directory : directories) {
+            if (new File(directory.directory, name).exists()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param packageName package to list, like {@code "net.minecraft.client"}, without its sub-packages; null for every package
+     * @param source source to list; null for every indexed source
+     * @return names of the indexed classes, directories and unindexed sources aren't listed
+     */
+    public List<String> getClassNames(String packageName, URL source) {
+        final String prefix = packageName == null ? null : packageName.replace('.', '/').concat("/");
+        final String location = source == null ? null : source.toExternalForm();
+        final List<String> names = new ArrayList<>();
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+            final String name = entry.getKey();
+            if (!name.endsWith(".class") || name.startsWith("META-INF/") || name.endsWith("module-info.class") || name.endsWith("package-info.class")) {
+                continue;
+            }
+            if (prefix != null && (!name.startsWith(prefix) || name.indexOf('/', prefix.length()) != -1)) {
+                continue;
+            }
+            if (location != null && !location.equals(entry.getValue().source.url.toExternalForm())) {
+                continue;
+            }
+            names.add(name.substring(0, name.length() - ".class".length()).replace('/', '.'));
+        }
+        return names;
+    }
+
+    /**
+     * @return a hash of the path, size and modification time of every source, in class path order, {@code Class-Path}
+     * expansions and sources added later included; the contents of directories aren't looked at
+     */
+    public long getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * Forget every indexed name and drop the jar mappings, for when the class path goes away; lookups miss afterwards
+     */
+    public synchronized void close() {
+        entries.clear();
+        directories.clear();
+        for (Source source : sources) {
+            if (source.mapped != null) {
+                source.mapped.close();
+            }
+        }
+    }
+
+    /**
+     * @return number of indexed names
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * @param source the jar
+     * @param slot position of the entry in the jar's central directory
+     */
+    public record Entry(Source source, int slot) {
+        /**
+         * @return if the entry can be read from the mapped jar, rather than through a URL
+         */
+        public boolean isMapped() {
+            return source.mapped != null && !source.mapped.isSigned();
+        }
+
+        /**
+         * @return the entry contents, see {@link MappedJar#read(int)}
+         * @throws IOException if the entry can't be read
+         */
+        public ByteBuffer read() throws IOException {
+            return source.mapped.read(slot);
+        }
+
+        /**
+         * @return the entry contents in an array of the exact size
+         * @throws IOException if the entry can't be read
+         */
+        public byte[] readBytes() throws IOException {
+            return source.mapped.readBytes(slot);
+        }
+    }
+
+    public static class Source {
+        private final int index;
+        private final URL url;
+        private final File directory;
+        private final File jar;
+        private final boolean local;
+        private MappedJar mapped;
+        private Manifest manifest;
+        private boolean multiRelease;
+        private List<URL> classPath = Collections.emptyList();
+        private volatile JarMetadata metadata;
+        private String base;
+
+        Source(int index, URL url) {
+            this.index = index;
+            this.url = url;
+            File file = null;
+            if ("file".equals(url.getProtocol())) {
+                try {
+                    file = new File(url.toURI());
+                } catch (URISyntaxException | IllegalArgumentException e) {
+                    file = new File(url.getPath());
+                }
+            }
+            this.local = file != null;
+            this.directory = file != null && file.isDirectory() ? file : null;
+            this.jar = file != null && file.isFile() ? file : null;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public URL getUrl() {
+            return url;
+        }
+
+        public File getJar() {
+            return jar;
+        }
+
+        /**
+         * @return the manifest of the jar, parsed when it was indexed
+         */
+        public Manifest getManifest() {
+            return manifest;
+        }
+
+        /**
+         * @return data shared by the classes of the jar, null if the source isn't a jar
+         */
+        public JarMetadata getMetadata() {
+            JarMetadata result = metadata;
+            if (result == null && jar != null) {
+                synchronized (this) {
+                    result = metadata;
+                    if (result == null) {
+                        metadata = result = new JarMetadata(url, manifest, mapped != null && mapped.isSigned());
+                    }
+                }
+            }
+            return result;
+        }
+
+        private long stamp() {
+            final File file = jar != null ? jar : directory;
+            final long stamp = url.toExternalForm().hashCode();
+            return file == null ? stamp : (stamp * 31 + file.length()) * 31 + file.lastModified();
+        }
+
+        private String[] readNames() {
+            if (jar == null) {
+                // A missing local file is simply skipped, like the class path does
+                return directory == null && local ? new String[0] : null;
+            }
+            try {
+                mapped = MappedJar.open(jar);
+                if (mapped != null) {
+                    String[] names = mapped.getNames();
+                    for (int slot = 0; slot < names.length; slot++) {
+                        if (JarFile.MANIFEST_NAME.equals(names[slot])) {
+                            readManifest(new Manifest(new ByteArrayInputStream(mapped.readBytes(slot))));
+                            break;
+                        }
+                    }
+                    return names;
+                }
+            } catch (IOException e) {
+                LOGGER.debug("Failed to map {}, reading it with JarFile", jar, e);
+                mapped = null;
+            }
+            try (JarFile zip = new JarFile(jar, false)) {
+                readManifest(zip.getManifest());
+                String[] names = new String[zip.size()];
+                int i = 0;
+                for (Enumeration<? extends ZipEntry> e = zip.entries(); e.hasMoreElements() && i < names.length; ) {
+                    names[i++] = e.nextElement().getName();
+                }
+                return i == names.length ? names : Arrays.copyOf(names, i);
+            } catch (IOException e) {
+                LOGGER.warn("Failed to index {}", jar, e);
+                return null;
+            }
+        }
+
+        private void readManifest(Manifest manifest) {
+            this.manifest = manifest;
+            if (manifest == null) {
+                return;
+            }
+            final Attributes attributes = manifest.getMainAttributes();
+            multiRelease = "true".equalsIgnoreCase(attributes.getValue(Attributes.Name.MULTI_RELEASE));
+            final String value = attributes.getValue(Attributes.Name.CLASS_PATH);
+            if (value == null || value.isBlank()) {
+                return;
+            }
+            // Relative to the jar; entries that aren't valid URLs are ignored, like the class path does
+            final List<URL> urls = new ArrayList<>();
+            for (String path : value.trim().split("\\s+")) {
+                try {
+                    urls.add(new URL(url, path));
+                } catch (MalformedURLException e) {
+                    LOGGER.debug("Ignoring Class-Path entry {} of {}", path, jar, e);
+                }
+            }
+            classPath = urls;
+        }
+
+        /**
+         * @param name entry name
+         * @return URL of the entry, the same one the class path would hand out
+         */
+        public URL resolve(String name) {
+            try {
+                if (base == null) {
+                    base = directory != null ? directory.toURI().toURL().toString() : "jar:" + jar.toURI().toURL() + "!/";
+                }
+                return new URL(base.concat(encodePath(name)));
+            } catch (MalformedURLException e) {
+                return null;
+            }
+        }
+    }
+
+    private static String encodePath(String name) {
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (!(c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9' || c == '/' || c == '.' || c == '$' || c == '_' || c == '-')) {
+                try {
+                    return new URI(null, null, name, null).getRawPath();
+                } catch (URISyntaxException e) {
+                    return name;
+                }
+            }
+        }
+        return name;
+    }
+}
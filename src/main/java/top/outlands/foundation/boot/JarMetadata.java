@@ -0,0 +1,92 @@
+package top.outlands.foundation.boot;
+
+import java.net.URL;
+import java.security.PermissionCollection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.jar.Manifest;
+
+/**
+ * Per-jar data shared by every class loaded from the jar, so findClass doesn't redo it for each class:
+ * the parsed manifest, the packages already defined or seal-checked for it, and the permissions its classes get.
+ * <p>
+ * Code source locations stay per class, as LaunchWrapper always had them and mods parse them, so only the permission
+ * set is shared; the protection domain around it is cheap to build.
+ */
+public class JarMetadata {
+    private final URL url;
+    private final Manifest manifest;
+    private final boolean signed;
+    private final Map<String, Package> packages = new ConcurrentHashMap<>();
+    private volatile PermissionCollection permissions;
+
+    public JarMetadata(URL url, Manifest manifest) {
+        this(url, manifest, false);
+    }
+
+    /**
+     * @param signed if the jar has signature files
+     */
+    public JarMetadata(URL url, Manifest manifest, boolean signed) {
+        this.url = url;
+        this.manifest = manifest;
+        this.signed = signed;
+    }
+
+    /**
+     * @return URL of the jar file
+     */
+    public URL getUrl() {
+        return url;
+    }
+
+    /**
+     * @return the parsed manifest, null if the jar has none
+     */
+    public Manifest getManifest() {
+        return manifest;
+    }
+
+    /**
+     * Entries of a signed jar have to be read through the {@code JarFile} for their signers to be known
+     * @return if the jar has signature files
+     */
+    public boolean isSigned() {
+        return signed;
+    }
+
+    /**
+     * @param packageName package name
+     * @return the package, if it was already defined or checked for a class of this jar
+     */
+    public Package getPackage(String packageName) {
+        return packages.get(packageName);
+    }
+
+    /**
+     * Remember a package as defined and checked for this jar
+     */
+    public void putPackage(String packageName, Package pkg) {
+        packages.put(packageName, pkg);
+    }
+
+    /**
+     * @param factory computes the permissions, only called for the first class of the jar
+     * @return permissions for classes of this jar
+     */
+    public PermissionCollection getPermissions(Supplier<PermissionCollection> factory) {
+        PermissionCollection result = permissions;
+        if (result == null) {
+            synchronized (this) {
+                result = permissions;
+                if (result == null) {
+                    result = factory.get();
+                    result.setReadOnly();
+                    permissions = result;
+                }
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,164 @@
+package top.outlands.foundation.boot;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Where findClass spends its time: a {@link LatencyHistogram} per phase, and optionally the slowest classes of a
+ * 1-in-N sample with their per-phase breakdown.
+ * <p>
+ * Phases are timed inclusively, so a class loaded by a transformer while it runs counts towards that transformer
+ * phase as well as its own.
+ */
+public class LoadMetrics {
+    private final LatencyHistogram[] histograms = new LatencyHistogram[Phase.values().length];
+    private final int sampleRate;
+    private final int keepSlowest;
+    private final AtomicLong calls = new AtomicLong();
+    private final PriorityQueue<Trace> slowest = new PriorityQueue<>(Comparator.comparingLong(Trace::getTotal));
+
+    /**
+     * @param sampleRate trace one in this many loads, 0 to trace none
+     * @param keepSlowest number of slowest traces to keep
+     */
+    public LoadMetrics(int sampleRate, int keepSlowest) {
+        this.sampleRate = sampleRate;
+        this.keepSlowest = keepSlowest;
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+    }
+
+    /**
+     * @param name class name
+     * @return the trace of this load, null if it's not sampled
+     */
+    public Trace begin(String name) {
+        final long call = calls.incrementAndGet();
+        return sampleRate > 0 && call % sampleRate == 0 ? new Trace(name) : null;
+    }
+
+    /**
+     * @param trace trace of the load, may be null
+     * @param phase the phase
+     * @param start {@link System#nanoTime()} when the phase started
+     * @return now, to start the next phase with
+     */
+    public long record(Trace trace, Phase phase, long start) {
+        final long now = System.nanoTime();
+        histograms[phase.ordinal()].record(now - start);
+        if (trace != null) {
+            trace.phases[phase.ordinal()] += now - start;
+        }
+        return now;
+    }
+
+    /**
+     * @param trace trace of the load, may be null
+     */
+    public void end(Trace trace) {
+        if (trace == null) {
+            return;
+        }
+        trace.total = System.nanoTime() - trace.start;
+        synchronized (slowest) {
+            slowest.offer(trace);
+            if (slowest.size() > keepSlowest) {
+                slowest.poll();
+            }
+        }
+    }
+
+    public LatencyHistogram getHistogram(Phase phase) {
+        return histograms[phase.ordinal()];
+    }
+
+    /**
+     * @return number of findClass calls seen
+     */
+    public long getCallCount() {
+        return calls.get();
+    }
+
+    /**
+     * @return the slowest sampled loads, slowest first
+     */
+    public List<Trace> getSlowest() {
+        final List<Trace> result;
+        synchronized (slowest) {
+            result = new ArrayList<>(slowest);
+        }
+        result.sort(Comparator.comparingLong(Trace::getTotal).reversed());
+        return result;
+    }
+
+    /**
+     * @param printer receives one line per phase, then one per slow class
+     */
+    public void print(Consumer<String> printer) {
+        printer.accept("Class loading metrics over " + getCallCount() + " findClass calls:");
+        for (Phase phase : Phase.values()) {
+            printer.accept(String.format("  %-22s %s", phase, getHistogram(phase)));
+        }
+        List<Trace> traces = getSlowest();
+        if (!traces.isEmpty()) {
+            printer.accept("Slowest sampled classes:");
+            traces.forEach(trace -> printer.accept("  " + trace));
+        }
+    }
+
+    public enum Phase {
+        EXCLUSION_LOOKUP,
+        NAME_REMAP,
+        RESOURCE_LOOKUP,
+        READ,
+        TRANSFORMERS,
+        EXPLICIT_TRANSFORMERS,
+        PACKAGE_DEFINITION,
+        DEFINE_CLASS
+    }
+
+    public static final class Trace {
+        private final String name;
+        private final long start = System.nanoTime();
+        private final long[] phases = new long[Phase.values().length];
+        private long total;
+
+        private Trace(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return duration of the whole load
+         */
+        public long getTotal() {
+            return total;
+        }
+
+        /**
+         * @return time spent in the phase
+         */
+        public long getPhase(Phase phase) {
+            return phases[phase.ordinal()];
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder(name).append(String.format(" %.2fms", total / 1e6));
+            for (Phase phase : Phase.values()) {
+                if (phases[phase.ordinal()] > 0) {
+                    builder.append(String.format(" %s=%.2fms", phase, phases[phase.ordinal()] / 1e6));
+                }
+            }
+            return builder.toString();
+        }
+    }
+}
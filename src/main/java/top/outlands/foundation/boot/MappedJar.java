@@ -0,0 +1,240 @@
+package top.outlands.foundation.boot;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * A jar mapped into memory, with its central directory parsed once. Entries are read straight from the mapping:
+ * stored entries are returned as slices of it, deflated ones are inflated with pooled {@link Inflater}s into an
+ * array of the exact size.
+ * <p>
+ * Only plain zips are handled. Zip64, encrypted entries and files too large to map make {@link #open(File)} return
+ * null, and the caller should use {@link java.util.zip.ZipFile} instead.
+ * <p>
+ * {@link #close()} drops the mapping; the memory is unmapped once neither the jar nor any slice it handed out is
+ * reachable. Unmapping eagerly would crash a reader still holding a slice.
+ */
+public class MappedJar implements Closeable {
+    private static final int EOCD_SIGNATURE = 0x06054b50;
+    private static final int CEN_SIGNATURE = 0x02014b50;
+    private static final int LOC_SIGNATURE = 0x04034b50;
+    private static final int EOCD_SIZE = 22;
+    private static final int CEN_SIZE = 46;
+    private static final int LOC_SIZE = 30;
+    private static final int STORED = 0;
+    private static final int DEFLATED = 8;
+    private static final int MAX_POOLED_INFLATERS = 16;
+    private static final Queue<Inflater> INFLATERS = new ConcurrentLinkedQueue<>();
+    private static final AtomicInteger POOLED = new AtomicInteger();
+
+    private final File file;
+    private volatile ByteBuffer buffer;
+    private final String[] names;
+    private final int[] headers;
+    private final int[] methods;
+    private final int[] compressedSizes;
+    private final int[] sizes;
+    private boolean signed;
+
+    private MappedJar(File file, ByteBuffer buffer, int count) {
+        this.file = file;
+        this.buffer = buffer;
+        this.names = new String[count];
+        this.headers = new int[count];
+        this.methods = new int[count];
+        this.compressedSizes = new int[count];
+        this.sizes = new int[count];
+    }
+
+    /**
+     * @param file jar to map
+     * @return the mapped jar, or null if it can't be handled here
+     * @throws IOException if the file can't be read or isn't a zip
+     */
+    public static MappedJar open(File file) throws IOException {
+        final ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            final long size = channel.size();
+            if (size > Integer.MAX_VALUE || size < EOCD_SIZE) {
+                return null;
+            }
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            buffer = mapped.order(ByteOrder.LITTLE_ENDIAN);
+        }
+        final int eocd = findEndOfCentralDirectory(buffer);
+        if (eocd == -1) {
+            throw new ZipException("No end of central directory in " + file);
+        }
+        final int count = Short.toUnsignedInt(buffer.getShort(eocd + 10));
+        final long cenSize = Integer.toUnsignedLong(buffer.getInt(eocd + 12));
+        final long cenOffset = Integer.toUnsignedLong(buffer.getInt(eocd + 16));
+        if (count == 0xFFFF || cenSize == 0xFFFFFFFFL || cenOffset == 0xFFFFFFFFL || cenOffset + cenSize > eocd) {
+            return null;
+        }
+        MappedJar jar = new MappedJar(file, buffer, count);
+        return jar.readCentralDirectory((int) cenOffset) ? jar : null;
+    }
+
+    private static int findEndOfCentralDirectory(ByteBuffer buffer) {
+        final int limit = Math.max(0, buffer.limit() - EOCD_SIZE - 0xFFFF);
+        for (int i = buffer.limit() - EOCD_SIZE; i >= limit; i--) {
+            if (buffer.getInt(i) == EOCD_SIGNATURE) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private boolean readCentralDirectory(int offset) throws ZipException {
+        for (int i = 0; i < names.length; i++) {
+            if (buffer.getInt(offset) != CEN_SIGNATURE) {
+                throw new ZipException("Bad central directory header in " + file);
+            }
+            final int flags = Short.toUnsignedInt(buffer.getShort(offset + 8));
+            final int compressedSize = buffer.getInt(offset + 20);
+            final int size = buffer.getInt(offset + 24);
+            final int nameLength = Short.toUnsignedInt(buffer.getShort(offset + 28));
+            final int extraLength = Short.toUnsignedInt(buffer.getShort(offset + 30));
+            final int commentLength = Short.toUnsignedInt(buffer.getShort(offset + 32));
+            final int header = buffer.getInt(offset + 42);
+            if ((flags & 1) != 0 || compressedSize < 0 || size < 0 || header < 0) {
+                // Encrypted, or a zip64 entry
+                return false;
+            }
+            byte[] name = new byte[nameLength];
+            buffer.get(offset + CEN_SIZE, name);
+            names[i] = new String(name, StandardCharsets.UTF_8);
+            headers[i] = header;
+            methods[i] = Short.toUnsignedInt(buffer.getShort(offset + 10));
+            compressedSizes[i] = compressedSize;
+            sizes[i] = size;
+            if (names[i].startsWith("META-INF/") && (names[i].endsWith(".SF") || names[i].endsWith(".RSA") || names[i].endsWith(".DSA") || names[i].endsWith(".EC"))) {
+                signed = true;
+            }
+            offset += CEN_SIZE + nameLength + extraLength + commentLength;
+        }
+        return true;
+    }
+
+    /**
+     * @return entry names, the index of a name is its slot
+     */
+    public String[] getNames() {
+        return names;
+    }
+
+    /**
+     * Signed jars need {@link java.util.jar.JarFile} to verify entries and provide code signers
+     * @return if the jar has signature files
+     */
+    public boolean isSigned() {
+        return signed;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * @param slot entry slot
+     * @return uncompressed size of the entry
+     */
+    public int getSize(int slot) {
+        return sizes[slot];
+    }
+
+    /**
+     * @param slot entry slot
+     * @return the entry contents; a read-only slice of the mapping for stored entries
+     * @throws IOException if the entry is malformed or uses an unsupported compression method
+     */
+    public ByteBuffer read(int slot) throws IOException {
+        final ByteBuffer buffer = this.buffer;
+        if (buffer == null) {
+            throw new ClosedChannelException();
+        }
+        final int header = headers[slot];
+        if (buffer.getInt(header) != LOC_SIGNATURE) {
+            throw new ZipException("Bad local header for " + names[slot] + " in " + file);
+        }
+        final int data = header + LOC_SIZE + Short.toUnsignedInt(buffer.getShort(header + 26)) + Short.toUnsignedInt(buffer.getShort(header + 28));
+        if (data + compressedSizes[slot] > buffer.limit()) {
+            throw new ZipException("Truncated entry " + names[slot] + " in " + file);
+        }
+        final ByteBuffer compressed = buffer.slice(data, compressedSizes[slot]).asReadOnlyBuffer();
+        return switch (methods[slot]) {
+            case STORED -> compressed;
+            case DEFLATED -> ByteBuffer.wrap(inflate(compressed, sizes[slot], slot));
+            default -> throw new ZipException("Unsupported compression method " + methods[slot] + " for " + names[slot]);
+        };
+    }
+
+    /**
+     * @param slot entry slot
+     * @return the entry contents in an array of the exact size
+     * @throws IOException if the entry can't be read
+     */
+    public byte[] readBytes(int slot) throws IOException {
+        ByteBuffer content = read(slot);
+        if (content.hasArray() && content.arrayOffset() == 0 && content.array().length == content.remaining()) {
+            return content.array();
+        }
+        byte[] bytes = new byte[content.remaining()];
+        content.get(bytes);
+        return bytes;
+    }
+
+    @Override
+    public void close() {
+        buffer = null;
+    }
+
+    private byte[] inflate(ByteBuffer compressed, int size, int slot) throws IOException {
+        Inflater inflater = INFLATERS.poll();
+        if (inflater == null) {
+            inflater = new Inflater(true);
+        } else {
+            POOLED.decrementAndGet();
+        }
+        try {
+            inflater.setInput(compressed);
+            byte[] result = new byte[size];
+            int read = 0;
+            while (read < size) {
+                int inflated = inflater.inflate(result, read, size - read);
+                if (inflated == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                read += inflated;
+            }
+            if (read != size) {
+                throw new ZipException("Size mismatch for " + names[slot] + " in " + file);
+            }
+            return result;
+        } catch (DataFormatException e) {
+            throw new ZipException("Corrupted entry " + names[slot] + " in " + file + ": " + e.getMessage());
+        } finally {
+            inflater.reset();
+            if (POOLED.incrementAndGet() <= MAX_POOLED_INFLATERS) {
+                INFLATERS.offer(inflater);
+            } else {
+                POOLED.decrementAndGet();
+                inflater.end();
+            }
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package top.outlands.foundation.boot;
+
+import java.net.URL;
+import java.security.CodeSigner;
+import java.security.CodeSource;
+
+/**
+ * Everything {@link ActualClassLoader#findClass(String)} needs from the source of a class, looked up once.
+ * @param bytes untransformed class bytes
+ * @param url URL of the class file, which is also the code source location, as LaunchWrapper always had it
+ * @param jar data shared by the classes of the jar holding the class, null if it's not in a jar
+ * @param signers code signers of the class file, null if unsigned
+ * @param codeSource code source to define the class with
+ */
+public record ResolvedClassEntry(byte[] bytes, URL url, JarMetadata jar, CodeSigner[] signers, CodeSource codeSource) {
+    /**
+     * @return if the class comes from a jar
+     */
+    public boolean isInJar() {
+        return jar != null;
+    }
+}
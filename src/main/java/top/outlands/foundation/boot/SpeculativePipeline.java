@@ -0,0 +1,172 @@
+package top.outlands.foundation.boot;
+
+import net.minecraft.launchwrapper.Launch;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import static top.outlands.foundation.boot.Foundation.LOGGER;
+
+/**
+ * Classes read and run through the leading thread-safe transformers of the chain ahead of demand, on a pool of idle
+ * cores. The requesting thread picks the result up and runs the rest of the chain, then defines the class itself.
+ * <p>
+ * A result only counts if the chain it was computed with is still the current one and the class bytes are the same,
+ * anything else is discarded. Results nobody asks for are evicted oldest first, and dropped when their class gets
+ * defined without them.
+ */
+public class SpeculativePipeline {
+    // Workers see the launch class loader as their context class loader, like the threads that load on demand
+    private final ForkJoinPool pool = new ForkJoinPool(Math.max(1, Runtime.getRuntime().availableProcessors() - 1), pool -> {
+        final ForkJoinWorkerThread thread = new ForkJoinWorkerThread(null, pool, true) {
+        };
+        thread.setDaemon(true);
+        thread.setContextClassLoader(Launch.classLoader);
+        return thread;
+    }, null, true);
+    // Insertion ordered, so the oldest result is evicted first; guarded by itself
+    private final Map<String, Result> results = new LinkedHashMap<>();
+    // Names in flight or waiting for demand, so they are not submitted twice
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+    private final int maxResults;
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder used = new LongAdder();
+    private final LongAdder discarded = new LongAdder();
+    private final LongAdder evicted = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    /**
+     * @param maxResults results kept waiting for demand, and classes in flight; past that, the oldest result is
+     *                   evicted and further submissions are skipped until some are done
+     */
+    public SpeculativePipeline(int maxResults) {
+        this.maxResults = maxResults;
+    }
+
+    /**
+     * @param name class name as requested, submitted once at most while it's in flight or waiting
+     * @param task computes the result, null if there is none
+     */
+    public void submit(String name, Supplier<Speculation> task) {
+        if (pending.size() >= maxResults || !pending.add(name)) {
+            return;
+        }
+        submitted.increment();
+        pool.execute(() -> {
+            Speculation speculation = null;
+            try {
+                speculation = task.get();
+            } catch (Throwable t) {
+                failed.increment();
+                LOGGER.debug("Speculative transformation of {} failed", name, t);
+            }
+            if (speculation == null) {
+                pending.remove(name);
+            } else {
+                put(name, speculation);
+            }
+        });
+    }
+
+    private void put(String name, Speculation speculation) {
+        completed.increment();
+        synchronized (results) {
+            Result previous = results.put(speculation.transformedName(), new Result(name, speculation));
+            if (previous != null && !previous.name().equals(name)) {
+                pending.remove(previous.name());
+            }
+            Iterator<Result> oldest = results.values().iterator();
+            while (results.size() > maxResults && oldest.hasNext()) {
+                pending.remove(oldest.next().name());
+                oldest.remove();
+                evicted.increment();
+            }
+        }
+    }
+
+    private Speculation remove(String transformedName) {
+        final Result result;
+        synchronized (results) {
+            result = results.remove(transformedName);
+        }
+        if (result == null) {
+            return null;
+        }
+        pending.remove(result.name());
+        return result.speculation();
+    }
+
+    /**
+     * @param transformedName transformed class name
+     * @param chain the current transformer chain
+     * @param input the class bytes about to be transformed
+     * @return the result, if it was computed from the same chain and bytes
+     */
+    public Speculation take(String transformedName, Object chain, byte[] input) {
+        Speculation speculation = remove(transformedName);
+        if (speculation == null) {
+            return null;
+        }
+        if (speculation.chain() != chain || !Arrays.equals(speculation.input(), input)) {
+            discarded.increment();
+            return null;
+        }
+        used.increment();
+        return speculation;
+    }
+
+    /**
+     * Drop the result of a class that got defined without it
+     * @param transformedName transformed class name
+     */
+    public void discard(String transformedName) {
+        if (remove(transformedName) != null) {
+            discarded.increment();
+        }
+    }
+
+    /**
+     * Drop every result, the chain they were computed with changed
+     */
+    public void discardAll() {
+        synchronized (results) {
+            for (Result result : results.values()) {
+                pending.remove(result.name());
+            }
+            discarded.add(results.size());
+            results.clear();
+        }
+    }
+
+    @Override
+    public String toString() {
+        final int waiting;
+        synchronized (results) {
+            waiting = results.size();
+        }
+        return String.format("%d submitted, %d completed, %d used, %d discarded, %d evicted, %d failed, %d waiting",
+                submitted.sum(), completed.sum(), used.sum(), discarded.sum(), evicted.sum(), failed.sum(), waiting);
+    }
+
+    /**
+     * @param transformedName transformed class name
+     * @param chain the transformer chain the result was computed with
+     * @param resumeFrom position in the chain to continue from
+     * @param input untransformed class bytes
+     * @param output bytes after the transformers before {@code resumeFrom}
+     */
+    public record Speculation(String transformedName, Object chain, int resumeFrom, byte[] input, byte[] output) {
+    }
+
+    private record Result(String name, Speculation speculation) {
+    }
+}
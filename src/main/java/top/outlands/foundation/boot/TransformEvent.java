@@ -0,0 +1,36 @@
+package top.outlands.foundation.boot;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event for one transformer run on one class. It lives in the boot package so that recording it
+ * never needs the launch class loader to load anything.
+ */
+@Name("top.outlands.foundation.Transform")
+@Label("Class Transform")
+@Description("A transformer run on a class")
+@Category({"Foundation", "Class Loading"})
+@Enabled(false)
+@StackTrace(false)
+public class TransformEvent extends Event {
+    @Label("Transformer")
+    public Class<?> transformer;
+
+    @Label("Class Name")
+    public String className;
+
+    @Label("Bytes In")
+    @DataAmount
+    public int bytesIn;
+
+    @Label("Bytes Out")
+    @DataAmount
+    public int bytesOut;
+}
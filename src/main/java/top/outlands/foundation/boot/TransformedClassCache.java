@@ -0,0 +1,133 @@
+package top.outlands.foundation.boot;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.CRC32;
+import java.util.zip.CRC32C;
+
+import static top.outlands.foundation.boot.Foundation.LOGGER;
+
+/**
+ * On-disk cache of transformed class bytes, turned on with {@code -Dfoundation.classCache=true}.
+ * <p>
+ * Every class has at most one entry, which remembers the hash of the untransformed bytes and the fingerprint of the
+ * transformer chain and class path that produced it. A changed jar or transformer simply misses and the entry gets
+ * overwritten. Payloads are checksummed, so a torn or corrupted file is treated as a miss too.
+ * <p>
+ * Transformers are skipped for cache hits, so classes a stateful transformer may touch aren't cached at all, see
+ * {@code IStatefulTransformer}.
+ */
+public class TransformedClassCache {
+    private static final int MAGIC = 0x46434301;
+    private static final int HEADER_SIZE = 4 + 8 + 8 + 4 + 4 + 4;
+    private final Path root;
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "Foundation Class Cache Writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public TransformedClassCache(File dir) {
+        this.root = dir.toPath();
+        LOGGER.info("Transformed class cache enabled at {}", dir);
+    }
+
+    /**
+     * @param transformedName class name
+     * @param inputHash {@link #hash(byte[])} of the untransformed bytes
+     * @param fingerprint transformer chain fingerprint
+     * @return cached bytes, or null if absent, stale or corrupted
+     */
+    public byte[] get(String transformedName, long inputHash, long fingerprint) {
+        final byte[] nameBytes = transformedName.getBytes(StandardCharsets.UTF_8);
+        final byte[] raw;
+        try {
+            raw = Files.readAllBytes(entryPath(nameBytes));
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            LOGGER.debug("Could not read cached class {}", transformedName, e);
+            return null;
+        }
+        if (raw.length < HEADER_SIZE) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(raw);
+        if (buffer.getInt() != MAGIC || buffer.getLong() != inputHash || buffer.getLong() != fingerprint) {
+            return null;
+        }
+        final int nameLength = buffer.getInt();
+        final int length = buffer.getInt();
+        final int checksum = buffer.getInt();
+        if (nameLength != nameBytes.length || HEADER_SIZE + nameLength + length != raw.length) {
+            return null;
+        }
+        if (!ByteBuffer.wrap(raw, HEADER_SIZE, nameLength).equals(ByteBuffer.wrap(nameBytes))) {
+            return null;
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(raw, HEADER_SIZE + nameLength, length);
+        if ((int) crc.getValue() != checksum) {
+            LOGGER.warn("Cached class {} failed checksum validation, discarding it", transformedName);
+            return null;
+        }
+        final byte[] data = new byte[length];
+        System.arraycopy(raw, HEADER_SIZE + nameLength, data, 0, length);
+        return data;
+    }
+
+    /**
+     * Queue an entry for writing, replacing any older entry of the class.
+     */
+    public void put(String transformedName, long inputHash, long fingerprint, byte[] data) {
+        writer.execute(() -> write(transformedName, inputHash, fingerprint, data));
+    }
+
+    private void write(String transformedName, long inputHash, long fingerprint, byte[] data) {
+        final byte[] nameBytes = transformedName.getBytes(StandardCharsets.UTF_8);
+        CRC32C crc = new CRC32C();
+        crc.update(data);
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + nameBytes.length + data.length);
+        buffer.putInt(MAGIC).putLong(inputHash).putLong(fingerprint)
+                .putInt(nameBytes.length).putInt(data.length).putInt((int) crc.getValue())
+                .put(nameBytes).put(data);
+        try {
+            Path target = entryPath(nameBytes);
+            Files.createDirectories(target.getParent());
+            Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+            Files.write(temp, buffer.array());
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOGGER.debug("Could not cache transformed class {}", transformedName, e);
+        }
+    }
+
+    /**
+     * File names are derived from a hash rather than the class name, so obfuscated names can't collide with
+     * reserved file names. The name is stored in the entry and checked on read.
+     */
+    private Path entryPath(byte[] nameBytes) {
+        String key = String.format("%016x", hash(nameBytes));
+        return root.resolve(key.substring(0, 2)).resolve(key.substring(2));
+    }
+
+    /**
+     * @param data bytes to hash
+     * @return a 64-bit hash made of a CRC32C and a CRC32 of the data
+     */
+    public static long hash(byte[] data) {
+        CRC32C high = new CRC32C();
+        high.update(data);
+        CRC32 low = new CRC32();
+        low.update(data);
+        return high.getValue() << 32 | low.getValue();
+    }
+}
@@ -0,0 +1,91 @@
+package top.outlands.foundation.boot;
+
+import top.outlands.foundation.trie.PrefixTrie;
+import top.outlands.foundation.trie.TrieNode;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Which transformers of a chain may apply to a class. Transformers are referred to by their position in the chain,
+ * so iterating the selected positions in order keeps the chain order.
+ * <p>
+ * Global transformers apply to every class; targeted ones are indexed by exact class name and by package prefix.
+ */
+public class TransformerDispatch {
+    private final Object[] chain;
+    private final BitSet global = new BitSet();
+    private final Map<String, BitSet> targets = new HashMap<>();
+    private final PrefixTrie<BitSet> prefixes = new PrefixTrie<>();
+    private boolean targeted;
+
+    /**
+     * @param chain the transformers, in the order they run
+     */
+    public TransformerDispatch(Object[] chain) {
+        this.chain = chain;
+    }
+
+    /**
+     * @return the transformers, in the order they run
+     */
+    public Object[] getChain() {
+        return chain;
+    }
+
+    /**
+     * @param position position of a transformer that applies to every class
+     */
+    public void addGlobal(int position) {
+        global.set(position);
+    }
+
+    /**
+     * @param position position of the transformer
+     * @param classNames transformed names of the classes it applies to
+     * @param packagePrefixes prefixes of the transformed names it applies to, like {@code "net.minecraft.client."}
+     */
+    public void addTargeted(int position, Collection<String> classNames, Collection<String> packagePrefixes) {
+        for (String prefix : packagePrefixes) {
+            BitSet bits = new BitSet();
+            bits.set(position);
+            TrieNode<BitSet> node = prefix.isEmpty() ? null : prefixes.getKeyValueNode(prefix);
+            if (node != null) {
+                node.getValue().set(position);
+            } else if (prefix.isEmpty() || !prefixes.put(prefix, bits)) {
+                // The trie doesn't take every character, such a transformer has to see every class
+                addGlobal(position);
+                return;
+            }
+        }
+        for (String className : classNames) {
+            targets.computeIfAbsent(className, k -> new BitSet()).set(position);
+        }
+        targeted = true;
+    }
+
+    /**
+     * @param transformedName transformed class name
+     * @return positions of the transformers that may apply to the class; not to be modified
+     */
+    public BitSet select(String transformedName) {
+        if (!targeted) {
+            return global;
+        }
+        BitSet selected = null;
+        BitSet exact = targets.get(transformedName);
+        if (exact != null) {
+            selected = (BitSet) global.clone();
+            selected.or(exact);
+        }
+        for (TrieNode<BitSet> node : prefixes.getKeyValueNodesAlongPath(transformedName)) {
+            if (selected == null) {
+                selected = (BitSet) global.clone();
+            }
+            selected.or(node.getValue());
+        }
+        return selected == null ? global : selected;
+    }
+}
@@ -4,14 +4,20 @@ import net.minecraft.launchwrapper.IClassNameTransformer;
 import net.minecraft.launchwrapper.IClassTransformer;
 import top.outlands.foundation.IExplicitTransformer;
 import top.outlands.foundation.function.ExplicitTransformerFunction;
+import top.outlands.foundation.function.SpeculationFunction;
 import top.outlands.foundation.function.TransformerFunction;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.PriorityQueue;
 import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
 import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
 
 
 /**
@@ -24,8 +30,13 @@ public class TransformerHolder {
     public ExplicitTransformerFunction runExplicitTransformersFunction = ((s, bytes) -> bytes);
     public TransformerFunction runTransformersFunction = ((name, transformedName, basicClass) -> basicClass);
     public Consumer<String> registerTransformerFunction = s -> {};
+    public Function<Collection<String>, Map<String, Throwable>> registerTransformersFunction = s -> Collections.emptyMap();
     public Function<String, String> transformNameFunction = s -> s;
     public Function<String, String> unTransformNameFunction = s -> s;
     public Runnable debugPrinter = () -> {};
+    public ToLongFunction<String> transformerFingerprintFunction = s -> 0L;
+    public Predicate<String> cacheableFunction = s -> true;
+    public LongSupplier transformerVersionFunction = () -> 0L;
+    public SpeculationFunction speculateFunction = ((name, transformedName, basicClass) -> null);
 
 }
\ No newline at end of file
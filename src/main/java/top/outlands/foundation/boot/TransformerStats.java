@@ -0,0 +1,97 @@
+package top.outlands.foundation.boot;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * What each transformer class costs: invocations, wall time, bytes allocated by the transforming thread, how much
+ * it grows classes, and how often it hands its input back untouched.
+ * <p>
+ * Allocation needs {@link com.sun.management.ThreadMXBean}; on runtimes without it that column stays at 0.
+ */
+public class TransformerStats {
+    private static final com.sun.management.ThreadMXBean THREADS = threads();
+    private final Map<Class<?>, Counters> counters = new ConcurrentHashMap<>();
+
+    private static com.sun.management.ThreadMXBean threads() {
+        try {
+            if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean bean && bean.isThreadAllocatedMemorySupported()) {
+                bean.setThreadAllocatedMemoryEnabled(true);
+                return bean;
+            }
+        } catch (Throwable t) {
+            Foundation.LOGGER.debug("Thread allocation counters are not available", t);
+        }
+        return null;
+    }
+
+    /**
+     * @return bytes allocated so far by the current thread, 0 if unknown
+     */
+    public long allocatedBytes() {
+        return THREADS == null ? 0 : THREADS.getCurrentThreadAllocatedBytes();
+    }
+
+    /**
+     * @param transformer the transformer that ran
+     * @param nanos wall time of the run
+     * @param allocated bytes allocated during the run
+     * @param input bytes handed to the transformer
+     * @param output bytes it returned
+     */
+    public void record(Object transformer, long nanos, long allocated, byte[] input, byte[] output) {
+        record(transformer, nanos, allocated, (output == null ? 0 : output.length) - (input == null ? 0 : input.length), output == input);
+    }
+
+    /**
+     * @param transformer the transformer that ran
+     * @param nanos wall time of the run
+     * @param allocated bytes allocated during the run
+     * @param growth how much the class grew, in bytes
+     * @param unchanged if the class was left untouched
+     */
+    public void record(Object transformer, long nanos, long allocated, int growth, boolean unchanged) {
+        Counters c = counters.computeIfAbsent(transformer.getClass(), k -> new Counters());
+        c.invocations.increment();
+        c.nanos.add(nanos);
+        c.allocated.add(allocated);
+        c.growth.add(growth);
+        if (unchanged) {
+            c.unchanged.increment();
+        }
+        long previous;
+        while (nanos > (previous = c.maxNanos.get()) && !c.maxNanos.compareAndSet(previous, nanos)) {
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * @param printer receives the table, one line per transformer, most expensive first
+     */
+    public void print(Consumer<String> printer) {
+        List<Map.Entry<Class<?>, Counters>> rows = new ArrayList<>(counters.entrySet());
+        rows.sort(Comparator.comparingLong((Map.Entry<Class<?>, Counters> e) -> e.getValue().nanos.sum()).reversed());
+        printer.accept(String.format("%-60s %10s %12s %10s %12s %12s %10s", "Transformer", "Calls", "Total ms", "Max ms", "Alloc MB", "Growth KB", "Unchanged"));
+        for (Map.Entry<Class<?>, Counters> row : rows) {
+            Counters c = row.getValue();
+            printer.accept(String.format("%-60s %10d %12.1f %10.2f %12.1f %12.1f %10d", row.getKey().getName(), c.invocations.sum(),
+                    c.nanos.sum() / 1e6, c.maxNanos.get() / 1e6, c.allocated.sum() / 1048576.0, c.growth.sum() / 1024.0, c.unchanged.sum()));
+        }
+    }
+
+    private static final class Counters {
+        private final LongAdder invocations = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+        private final LongAdder allocated = new LongAdder();
+        private final LongAdder growth = new LongAdder();
+        private final LongAdder unchanged = new LongAdder();
+    }
+}
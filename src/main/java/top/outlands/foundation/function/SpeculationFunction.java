@@ -0,0 +1,8 @@
+package top.outlands.foundation.function;
+
+import top.outlands.foundation.boot.SpeculativePipeline;
+
+@FunctionalInterface
+public interface SpeculationFunction {
+    SpeculativePipeline.Speculation apply(final String name, final String transformedName, byte[] basicClass);
+}
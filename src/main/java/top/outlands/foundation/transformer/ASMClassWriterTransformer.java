@@ -1,11 +1,8 @@
 package top.outlands.foundation.transformer;
 
-import javassist.ClassPool;
-import javassist.CtClass;
 import net.minecraft.launchwrapper.Launch;
 import top.outlands.foundation.IExplicitTransformer;
-
-import java.io.ByteArrayInputStream;
+import top.outlands.foundation.boot.ASMPatches;
 
 import static top.outlands.foundation.boot.Foundation.LOGGER;
 
@@ -13,20 +10,27 @@ public class ASMClassWriterTransformer implements IExplicitTransformer {
     @Override
     public byte[] transform(byte[] basicClass) {
         try {
-            var cp = ClassPool.getDefault();
-            CtClass cc = cp.makeClass(new ByteArrayInputStream(basicClass));
-            LOGGER.debug("Patching " + cc.getName());
-            var method = cc.getDeclaredMethod("getCommonSuperClass");
-            method.setBody("{return top.outlands.foundation.transformer.ASMClassWriterTransformer.getCommonSuperClass($$);}");
-
-            //cc.debugWriteFile("./dump");
-            basicClass = cc.toBytecode();
+            LOGGER.debug("Patching ClassWriter");
+            basicClass = ASMPatches.patchClassWriter(basicClass);
         }catch (Throwable t) {
             LOGGER.error(t);
         }
         return basicClass;
     }
+    /**
+     * Resolved from class file headers, so computing frames doesn't load classes. Types without a class file, like
+     * classes made up by transformers, are still loaded.
+     */
     public static String getCommonSuperClass(final String type1, final String type2) {
+        try {
+            return Launch.classLoader.getClassHierarchy().getCommonSuperClass(type1, type2);
+        } catch (TypeNotPresentException e) {
+            LOGGER.debug("Loading classes to find the common superclass of {} and {}", type1, type2);
+            return getCommonSuperClassByLoading(type1, type2);
+        }
+    }
+
+    private static String getCommonSuperClassByLoading(final String type1, final String type2) {
         ClassLoader classLoader = Launch.appClassLoader;
         Class<?> class1;
         try {
@@ -1,6 +1,7 @@
 
 package top.outlands.foundation.trie;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
@@ -179,6 +180,36 @@ public class PrefixTrie<V> extends AbstractTrie<V> {
         return node;
 	}
 	
+	/**
+	 * For input word "abcde", with keys "a", "abc" and "abd", return nodes "a" and "abc"
+	 * @param key : a word
+	 * @return all key-value nodes whose key is a prefix of the word, shortest first
+	 */
+	public List<TrieNode<V>> getKeyValueNodesAlongPath(String key) {
+		List<TrieNode<V>> result = new ArrayList<>(2);
+		TrieNode<V> node = root;
+		int i = 0;
+		while (i < key.length()) {
+			if (!key.startsWith(node.snippet, i)) {
+				return result;
+			}
+			if (node.isKeyValueNode) {
+				result.add(node);
+			}
+			i += node.snippet.length();
+			if (i == key.length()) {
+				return result;
+			}
+			int index = charToIndex(key.charAt(i));
+			if (index >= 0 && node.children[index] != null) {
+				node = node.children[index];
+			} else {
+				return result;
+			}
+		}
+		return result;
+	}
+
 	public TrieNode<V> getFirstKeyValueNode(String key) {
 		TrieNode<V> node = root;
 		int i = 0;
@@ -0,0 +1,76 @@
+package top.outlands;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import top.outlands.foundation.boot.ClassBytesArena;
+import top.outlands.foundation.boot.ClassBytesCache;
+
+public class ClassBytesCacheTest {
+    @Test
+    public void testEviction() {
+        ClassBytesCache cache = new ClassBytesCache(1000, false);
+        cache.put("hot", new byte[400]);
+        for (int i = 0; i < 5; i++) {
+            cache.get("hot");
+        }
+        cache.put("cold", new byte[400]);
+        cache.put("new", new byte[400]);
+        Assertions.assertNotNull(cache.get("hot"));
+        Assertions.assertEquals(2, cache.size());
+        Assertions.assertTrue(cache.getWeight() <= 1000);
+        Assertions.assertEquals(1, cache.getEvictionCount());
+    }
+
+    @Test
+    public void testRelease() {
+        ClassBytesCache cache = new ClassBytesCache(1000, false);
+        cache.put("a", new byte[10]);
+        cache.put("b", new byte[10]);
+        cache.pin("b");
+        cache.release("a");
+        cache.release("b");
+        Assertions.assertNull(cache.get("a"));
+        Assertions.assertNotNull(cache.get("b"));
+        Assertions.assertEquals(10, cache.getWeight());
+        Assertions.assertEquals(1, cache.getHitCount());
+        Assertions.assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void testOffHeap() {
+        ClassBytesArena arena = new ClassBytesArena(4 << 20);
+        ClassBytesCache cache = new ClassBytesCache(8 << 20, false, arena);
+        byte[] bytes = {1, 2, 3};
+        cache.put("a", bytes);
+        byte[] read = cache.get("a");
+        Assertions.assertArrayEquals(bytes, read);
+        Assertions.assertNotSame(bytes, read);
+        Assertions.assertEquals(3, arena.getUsed());
+        cache.release("a");
+        Assertions.assertEquals(0, arena.getUsed());
+        Assertions.assertNull(cache.get("a"));
+        cache.put("big", new byte[5 << 20]);
+        Assertions.assertEquals(1, arena.getRejectionCount());
+    }
+
+    @Test
+    public void testOffHeapBound() {
+        ClassBytesArena arena = new ClassBytesArena(4 << 20);
+        // The heap bound doesn't apply to off-heap bytes
+        ClassBytesCache cache = new ClassBytesCache(1000, false, arena);
+        for (int i = 0; i < 100; i++) {
+            cache.put("a" + i, new byte[10000]);
+        }
+        Assertions.assertEquals(100, cache.size());
+        Assertions.assertEquals(0, cache.getWeight());
+        Assertions.assertEquals(0, cache.getEvictionCount());
+        // A full arena evicts off-heap entries to make room, instead of spilling onto the heap
+        for (int i = 0; i < 1000; i++) {
+            cache.put("b" + i, new byte[10000]);
+        }
+        Assertions.assertEquals(0, cache.getWeight());
+        Assertions.assertTrue(cache.getEvictionCount() > 0);
+        Assertions.assertTrue(arena.getUsed() <= 4 << 20);
+        Assertions.assertNotNull(cache.get("b999"));
+    }
+}
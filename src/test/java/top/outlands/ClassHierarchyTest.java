@@ -0,0 +1,65 @@
+package top.outlands;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+import top.outlands.foundation.boot.ClassHierarchy;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+public class ClassHierarchyTest {
+    @Test
+    public void testCommonSuperClass() {
+        Set<String> read = new HashSet<>();
+        ClassHierarchy hierarchy = new ClassHierarchy(name -> null, name -> {
+            read.add(name);
+            try (InputStream stream = ClassLoader.getSystemResourceAsStream(name + ".class")) {
+                return stream == null ? null : stream.readAllBytes();
+            } catch (IOException e) {
+                return null;
+            }
+        });
+        Assertions.assertEquals("java/util/AbstractList", hierarchy.getCommonSuperClass("java/util/ArrayList", "java/util/LinkedList"));
+        Assertions.assertEquals("java/lang/Number", hierarchy.getCommonSuperClass("java/lang/Integer", "java/lang/Long"));
+        Assertions.assertEquals("java/lang/Object", hierarchy.getCommonSuperClass("java/lang/String", "java/lang/Integer"));
+        Assertions.assertEquals("java/lang/Runnable", hierarchy.getCommonSuperClass("java/lang/Runnable", "java/lang/Thread"));
+        Assertions.assertEquals("java/lang/Object", hierarchy.getCommonSuperClass("java/util/List", "java/util/Set"));
+        Assertions.assertTrue(hierarchy.isInterface("java/util/List"));
+        Assertions.assertTrue(hierarchy.supertypes("java/util/ArrayList").contains("java/util/Collection"));
+        Assertions.assertTrue(read.contains("java/util/AbstractCollection"));
+        Assertions.assertThrows(TypeNotPresentException.class, () -> hierarchy.getCommonSuperClass("does/not/Exist", "java/lang/Object"));
+    }
+
+    @Test
+    public void testRenamedHeaders() {
+        // Obfuscated class files refer to each other by their obfuscated names
+        Map<String, String> deobfuscated = Map.of("a", "net/minecraft/entity/Entity", "b", "net/minecraft/entity/EntityLiving",
+                "c", "net/minecraft/entity/item/EntityItem", "d", "net/minecraft/entity/IProjectile");
+        Map<String, byte[]> classes = new HashMap<>();
+        classes.put("net/minecraft/entity/Entity", writeClass("a", "java/lang/Object", Opcodes.ACC_PUBLIC));
+        classes.put("net/minecraft/entity/EntityLiving", writeClass("b", "a", Opcodes.ACC_PUBLIC));
+        classes.put("net/minecraft/entity/item/EntityItem", writeClass("c", "a", Opcodes.ACC_PUBLIC, "d"));
+        classes.put("net/minecraft/entity/IProjectile", writeClass("d", "java/lang/Object", Opcodes.ACC_PUBLIC | Opcodes.ACC_INTERFACE | Opcodes.ACC_ABSTRACT));
+        ClassHierarchy hierarchy = new ClassHierarchy(name -> name.startsWith("java/") ? Object.class : null, classes::get,
+                name -> deobfuscated.getOrDefault(name, name));
+        Assertions.assertEquals("net/minecraft/entity/Entity",
+                hierarchy.getCommonSuperClass("net/minecraft/entity/EntityLiving", "net/minecraft/entity/item/EntityItem"));
+        Assertions.assertEquals("net/minecraft/entity/Entity",
+                hierarchy.getCommonSuperClass("net/minecraft/entity/item/EntityItem", "net/minecraft/entity/Entity"));
+        Assertions.assertTrue(hierarchy.supertypes("net/minecraft/entity/item/EntityItem").contains("net/minecraft/entity/IProjectile"));
+        Assertions.assertFalse(hierarchy.supertypes("net/minecraft/entity/EntityLiving").contains("a"));
+    }
+
+    private static byte[] writeClass(String name, String superName, int access, String... interfaces) {
+        ClassWriter writer = new ClassWriter(0);
+        writer.visit(Opcodes.V1_8, access, name, null, superName, interfaces);
+        writer.visitEnd();
+        return writer.toByteArray();
+    }
+}
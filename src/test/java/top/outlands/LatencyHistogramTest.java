@@ -0,0 +1,25 @@
+package top.outlands;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import top.outlands.foundation.boot.LatencyHistogram;
+
+public class LatencyHistogramTest {
+    @Test
+    public void testPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000);
+        }
+        Assertions.assertEquals(1000, histogram.getCount());
+        Assertions.assertEquals(1_000_000, histogram.getMax());
+        Assertions.assertEquals(500_500_000, histogram.getTotal());
+        // Buckets are 1/16 of a power of two wide
+        long p50 = histogram.getPercentile(50);
+        Assertions.assertTrue(p50 <= 500_000 && p50 > 500_000 * 15 / 16, "p50 " + p50);
+        long p99 = histogram.getPercentile(99);
+        Assertions.assertTrue(p99 <= 990_000 && p99 > 990_000 * 15 / 16, "p99 " + p99);
+        long p0 = histogram.getPercentile(0);
+        Assertions.assertTrue(p0 <= 1000 && p0 > 1000 * 15 / 16, "p0 " + p0);
+    }
+}
@@ -0,0 +1,114 @@
+package top.outlands;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import top.outlands.foundation.boot.ClassPathIndex;
+import top.outlands.foundation.boot.MappedJar;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.jar.Attributes;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+public class MappedJarTest {
+    @Test
+    public void testRead() throws IOException {
+        File jar = File.createTempFile("mapped", ".jar");
+        jar.deleteOnExit();
+        byte[] random = new byte[10000];
+        new Random(42).nextBytes(random);
+        byte[] text = "a".repeat(5000).getBytes();
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(jar))) {
+            ZipEntry stored = new ZipEntry("a/Stored.class");
+            stored.setMethod(ZipEntry.STORED);
+            stored.setSize(random.length);
+            CRC32 crc = new CRC32();
+            crc.update(random);
+            stored.setCrc(crc.getValue());
+            out.putNextEntry(stored);
+            out.write(random);
+            out.putNextEntry(new ZipEntry("a/Deflated.class"));
+            out.write(text);
+            out.putNextEntry(new ZipEntry("a/Empty.class"));
+        }
+        MappedJar mapped = MappedJar.open(jar);
+        Assertions.assertNotNull(mapped);
+        Assertions.assertFalse(mapped.isSigned());
+        try (ZipFile zip = new ZipFile(jar)) {
+            String[] names = mapped.getNames();
+            Assertions.assertEquals(zip.size(), names.length);
+            for (int slot = 0; slot < names.length; slot++) {
+                byte[] expected = zip.getInputStream(zip.getEntry(names[slot])).readAllBytes();
+                Assertions.assertArrayEquals(expected, mapped.readBytes(slot));
+                Assertions.assertEquals(expected.length, mapped.getSize(slot));
+            }
+        }
+        ByteBuffer slice = mapped.read(0);
+        Assertions.assertTrue(slice.isReadOnly());
+        Assertions.assertEquals(random.length, slice.remaining());
+        mapped.close();
+        Assertions.assertThrows(IOException.class, () -> mapped.readBytes(0));
+    }
+
+    @Test
+    public void testIndexOrder() throws IOException {
+        File first = writeJar("a/Shared.class", "first");
+        File directory = Files.createTempDirectory("index").toFile();
+        File second = writeJar("a/Shared.class", "second");
+        File inDirectory = new File(directory, "a/Shared.class");
+        inDirectory.getParentFile().mkdirs();
+        Files.writeString(inDirectory.toPath(), "directory");
+        inDirectory.deleteOnExit();
+        inDirectory.getParentFile().deleteOnExit();
+        directory.deleteOnExit();
+
+        ClassPathIndex index = new ClassPathIndex(new URL[]{directory.toURI().toURL(), first.toURI().toURL()});
+        index.add(second.toURI().toURL());
+        URL resource = index.findResource("a/Shared.class", name -> null);
+        Assertions.assertEquals("directory", new String(resource.openStream().readAllBytes()));
+        Assertions.assertNull(index.locate("a/Shared.class"));
+        Assertions.assertNull(index.findResource("a/Missing.class", name -> null));
+        Assertions.assertFalse(index.mightContain("a/Missing.class"));
+        Assertions.assertTrue(index.mightContain("a/Shared.class"));
+
+        index = new ClassPathIndex(new URL[]{first.toURI().toURL(), directory.toURI().toURL(), second.toURI().toURL()});
+        Assertions.assertEquals("first", new String(index.locate("a/Shared.class").readBytes()));
+        Assertions.assertEquals("first", new String(index.findResource("a/Shared.class", name -> null).openStream().readAllBytes()));
+    }
+
+    @Test
+    public void testManifestClassPath() throws IOException {
+        File referenced = writeJar("a/Shared.class", "referenced");
+        File later = writeJar("a/Shared.class", "later");
+        File referencing = File.createTempFile("index", ".jar");
+        referencing.deleteOnExit();
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        manifest.getMainAttributes().put(Attributes.Name.CLASS_PATH, referenced.getName() + " missing.jar");
+        new JarOutputStream(new FileOutputStream(referencing), manifest).close();
+
+        ClassPathIndex index = new ClassPathIndex(new URL[]{referencing.toURI().toURL(), later.toURI().toURL()});
+        Assertions.assertEquals("referenced", new String(index.locate("a/Shared.class").readBytes()));
+        Assertions.assertFalse(index.mightContain("a/Missing.class"));
+    }
+
+    private static File writeJar(String name, String content) throws IOException {
+        File jar = File.createTempFile("index", ".jar");
+        jar.deleteOnExit();
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(jar))) {
+            out.putNextEntry(new ZipEntry(name));
+            out.write(content.getBytes());
+        }
+        return jar;
+    }
+}
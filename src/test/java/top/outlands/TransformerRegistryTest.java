@@ -0,0 +1,57 @@
+package top.outlands;
+
+import net.minecraft.launchwrapper.IClassTransformer;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import top.outlands.foundation.TransformerRegistry;
+
+import java.util.Iterator;
+import java.util.List;
+
+public class TransformerRegistryTest {
+    private static IClassTransformer transformer(int priority) {
+        return new IClassTransformer() {
+            @Override
+            public byte[] transform(String name, String transformedName, byte[] basicClass) {
+                return basicClass;
+            }
+
+            @Override
+            public int getPriority() {
+                return priority;
+            }
+        };
+    }
+
+    @Test
+    public void testSnapshots() {
+        TransformerRegistry registry = new TransformerRegistry();
+        IClassTransformer late = transformer(10);
+        IClassTransformer first = transformer(0);
+        IClassTransformer second = transformer(0);
+        registry.add(late);
+        registry.add(first);
+        registry.add(second);
+        Assertions.assertEquals(List.of(first, second, late), registry);
+        IClassTransformer[] snapshot = registry.getSnapshot();
+        long version = registry.getVersion();
+        Assertions.assertEquals(3, version);
+
+        registry.sort(null);
+        Assertions.assertSame(snapshot, registry.getSnapshot());
+        Assertions.assertEquals(version, registry.getVersion());
+
+        for (Iterator<IClassTransformer> it = registry.iterator(); it.hasNext(); ) {
+            if (it.next() == late) {
+                it.remove();
+            }
+        }
+        Assertions.assertEquals(List.of(first, second), registry);
+        for (IClassTransformer transformer : registry) {
+            registry.remove(transformer);
+        }
+        Assertions.assertTrue(registry.isEmpty());
+        Assertions.assertEquals(3, snapshot.length);
+        Assertions.assertEquals(version + 3, registry.getVersion());
+    }
+}
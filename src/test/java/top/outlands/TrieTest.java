@@ -6,11 +6,13 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.core.Logger;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
+import top.outlands.foundation.boot.TransformerDispatch;
 import top.outlands.foundation.boot.UnsafeHolder;
 import top.outlands.foundation.trie.PrefixTrie;
 import top.outlands.foundation.trie.TrieNode;
 
 import java.util.Arrays;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 public class TrieTest {
@@ -93,5 +95,27 @@ public class TrieTest {
         }
         trie.getRoot().getKeyValueNodes().forEach(node -> log.info(node.getKey()));
     }
-    
+
+    @Test
+    public void TestPathNodes() {
+        PrefixTrie<String> trie = new PrefixTrie<>();
+        trie.put("net.", "net");
+        trie.put("net.minecraft.", "minecraft");
+        trie.put("net.minecraft.client.", "client");
+        trie.put("net.minecraftforge.", "forge");
+        Assertions.assertEquals(Arrays.asList("net", "minecraft", "client"),
+                trie.getKeyValueNodesAlongPath("net.minecraft.client.Minecraft").stream().map(TrieNode::getValue).toList());
+        Assertions.assertEquals(Arrays.asList("net", "forge"),
+                trie.getKeyValueNodesAlongPath("net.minecraftforge.common.MinecraftForge").stream().map(TrieNode::getValue).toList());
+        Assertions.assertTrue(trie.getKeyValueNodesAlongPath("com.example.Mod").isEmpty());
+
+        TransformerDispatch dispatch = new TransformerDispatch(new Object[4]);
+        dispatch.addGlobal(0);
+        dispatch.addTargeted(1, Set.of("net.minecraft.client.Minecraft"), Set.of());
+        dispatch.addTargeted(2, Set.of(), Set.of("net.minecraft."));
+        dispatch.addGlobal(3);
+        Assertions.assertEquals("{0, 1, 2, 3}", dispatch.select("net.minecraft.client.Minecraft").toString());
+        Assertions.assertEquals("{0, 2, 3}", dispatch.select("net.minecraft.world.World").toString());
+        Assertions.assertEquals("{0, 3}", dispatch.select("com.example.Mod").toString());
+    }
 }